@@ -80,6 +80,9 @@ public class AlbumController extends Controller{
             //currentAlbums = userAlbums;
             tableView.getItems().setAll(userAlbums);
         }
+        if (currentUser.isReadOnly()){
+            handleDBStatus(DBStatus.READ_ONLY);
+        }
     }
 
     /**
@@ -203,9 +206,12 @@ public class AlbumController extends Controller{
                 }
 
                 // Finally, we can edit it!
+                DBStatus attempt = db.renameAlbum(currentUser, databaseAlbum, name);
+                if (attempt != DBStatus.SUCCESS){
+                    handleDBStatus(attempt);
+                    continue;
+                }
                 tableView.getItems().remove(album);
-                //album.setName(name);
-                databaseAlbum.setName(name);
                 tableView.getItems().add(databaseAlbum);
                 tableView.refresh(); //Not the smartest, but works!
                 notAdded = false;
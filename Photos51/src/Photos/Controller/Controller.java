@@ -31,6 +31,7 @@ public abstract class Controller {
     protected static final String albumScene = "../View/album.fxml";
     protected static final String photoScene = "../View/photo.fxml";
     protected static final String searchScene = "../View/search.fxml";
+    protected static final String zoomScene = "../View/zoom.fxml";
 
 
     protected User currentUser;
@@ -81,13 +82,13 @@ public abstract class Controller {
 //    }
 
     /**
-     * Handle the exit function of this application. First saves the database, and then
-     * ends the application.
+     * Handle the exit function of this application. First saves the database and waits
+     * for it to be written, and then ends the application.
      */
     protected void handleExit(){
         //controller.Dispose();
         //System.out.println("handled exit.");
-        db.saveCurrentDatabase();
+        db.flushAndWait();
         Platform.exit();
         System.exit(0);
     }
@@ -199,6 +200,12 @@ public abstract class Controller {
         else if (status == DBStatus.NO_ALBUM){
             showError("Album was not found in the database.");
         }
+        else if (status == DBStatus.NO_PHOTO){
+            showError("Photo was not found in the album.");
+        }
+        else if (status == DBStatus.DUPLICATE_PHOTO){
+            showError("This photo is already in the album.");
+        }
         else if (status == DBStatus.DUPLICATE_ALBUM){
             showError("This album already exists.");
         } else if (status == DBStatus.ADMIN) {
@@ -210,5 +217,8 @@ public abstract class Controller {
         else if (status == DBStatus.NOT_MULTIPLE_TAG){
             showError("This tag does not allow multiples.");
         }
+        else if (status == DBStatus.READ_ONLY){
+            showError("Some of your albums could not be read from the database file, so they cannot be changed.");
+        }
     }
 }
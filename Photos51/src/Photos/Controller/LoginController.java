@@ -8,6 +8,7 @@ import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 
 import java.io.FileNotFoundException;
+import java.util.List;
 
 
 /**
@@ -80,10 +81,11 @@ public class LoginController extends Controller{
                 changeScene(stage, adminScene);
             }
             else{
-                // Test if we can load any of these photos.
-                DBStatus attempt = db.attemptPhotoLoad(currentUser);
-                if (attempt == DBStatus.FAILURE){
-                    showError("Some photos were not found on this machine. They were removed from this session.");
+                // Make sure the user's photos are still on this machine.
+                List<Photo> missing = db.findMissingPhotos(currentUser);
+                if (!missing.isEmpty()){
+                    db.deletePhotos(currentUser, missing);
+                    showError(missingMessage(missing));
                 }
                 changeScene(stage, albumScene);
             }
@@ -94,6 +96,24 @@ public class LoginController extends Controller{
     }
 
 
+    /**
+     * Build the message shown when some photos were not found, listing the first few of them.
+     * @param missing Photos that were not found.
+     * @return Message to show.
+     */
+    private static String missingMessage(List<Photo> missing){
+        StringBuilder message = new StringBuilder(missing.size() + " photos were not found on this machine. "
+                + "They were removed from this session.");
+        int shown = Math.min(missing.size(), 10);
+        for (int i = 0; i < shown; i++){
+            message.append("\n").append(missing.get(i).getDirectory());
+        }
+        if (missing.size() > shown){
+            message.append("\n...and ").append(missing.size() - shown).append(" more.");
+        }
+        return message.toString();
+    }
+
     /**
      * Handles the quit button. Simply closes the application.
      * @param event Action event of the button click.
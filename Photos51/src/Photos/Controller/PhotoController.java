@@ -4,11 +4,17 @@ import Photos.Model.*;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.BooleanBinding;
 import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
@@ -23,9 +29,14 @@ import javafx.util.Callback;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Handles the photo view that shows when opening an album. Displays photos
@@ -39,22 +50,26 @@ public class PhotoController extends Controller {
 
     // Main function buttons
     @FXML protected Button addButton;
+    @FXML protected Button importButton;
     @FXML protected Button backButton;
     @FXML protected Button logoutButton;
+    @FXML protected ToggleButton gridToggle;
 
     // Slideshow view
     @FXML protected Button copyButton;
     @FXML protected Button moveButton;
     @FXML protected Button deleteButton;
+    @FXML protected Button zoomButton;
     @FXML protected Button leftButton;
     @FXML protected Button rightButton;
     @FXML protected Button saveCaptionButton;
     @FXML protected Button addTagsButton;
 
     @FXML protected ImageView imageView;
-    @FXML protected TableView tableView;
+    @FXML protected TableView<Photo> tableView;
+    @FXML protected ListView<Integer> gridView;
     @FXML protected TableView tagTableView;
-    @FXML protected TableColumn<Photo, ImageView> thumbColumn;
+    @FXML protected TableColumn<Photo, Photo> thumbColumn;
     @FXML protected TableColumn<Photo, String> captionColumn;
     @FXML protected TableColumn<Photo, String> dateColumn;
     @FXML protected TableColumn<Tag, String> tagTypeColumn;
@@ -74,13 +89,25 @@ public class PhotoController extends Controller {
     protected List<Photo> photos;
     protected List<Tag> tags;
 
+    /**
+     * Number of photos on each side of the selected one to load a preview of.
+     */
+    private static final int previewsAhead = 2;
+    protected PreviewLoader previews;
+
+    /**
+     * Number of photos in each row of the grid view.
+     */
+    private static final int gridColumns = 3;
+
     /**
      * Init the scene by setting up the table view
      */
     @FXML private void initialize(){
 
         // Set up the tableView.
-        thumbColumn.setCellValueFactory(new PropertyValueFactory("imageView"));
+        thumbColumn.setCellValueFactory(currPhoto -> new ReadOnlyObjectWrapper<>(currPhoto.getValue()));
+        thumbColumn.setCellFactory(column -> new ThumbnailCell());
         captionColumn.setCellValueFactory(new PropertyValueFactory("caption"));
         dateColumn.setCellValueFactory(new PropertyValueFactory("dateModified"));
         tagTypeColumn.setCellValueFactory(currTag -> new SimpleStringProperty(currTag.getValue().getName()));
@@ -89,6 +116,16 @@ public class PhotoController extends Controller {
         Callback<TableColumn<Tag, Tag>, TableCell<Tag, Tag>> cellFactory = handleOptionCellFactory();
         tagOptionColumn.setCellFactory(cellFactory);
 
+        // Load previews at the size they are shown at.
+        previews = new PreviewLoader(imageView.getFitWidth(), imageView.getFitHeight(), previewsAhead);
+
+        // Set up the grid view. It shows the same photos as the table, a row at a time, and
+        // shares its selection.
+        gridView.setCellFactory(list -> new ThumbnailGridRow(tableView.getItems(), gridColumns,
+                tableView.getSelectionModel().selectedIndexProperty(),
+                index -> tableView.getSelectionModel().select(index)));
+        tableView.getItems().addListener((ListChangeListener<Photo>) change -> updateGrid());
+
         // Add listener to selection model
         tableView.getSelectionModel().selectedIndexProperty().addListener((obs, oldVal, newVal) -> selectItem());
         // test
@@ -101,7 +138,7 @@ public class PhotoController extends Controller {
     protected void selectItem(){
         if(!tableView.getItems().isEmpty()){
             //Populate photo detailed view
-            Photo photo = (Photo) tableView.getSelectionModel().getSelectedItem();
+            Photo photo = tableView.getSelectionModel().getSelectedItem();
             if(photo == null){
                 return;
             }
@@ -110,22 +147,25 @@ public class PhotoController extends Controller {
                 tagTableView.getItems().setAll(tags);
             }
             captionTextField.setText(photo.getCaption());
-            imageView.setImage(new Image(photo.getPath()));
+            showPreview(photo);
             copyButton.setDisable(false);
             moveButton.setDisable(false);
             deleteButton.setDisable(false);
+            zoomButton.setDisable(false);
             leftButton.setDisable(false);
             rightButton.setDisable(false);
             saveCaptionButton.setDisable(false);
             addTagsButton.setDisable(false);
 
         }else{
+            previews.clear();
             imageView.setImage(null);
             tagTableView.getItems().setAll(new ArrayList());
             captionTextField.setText("");
             copyButton.setDisable(true);
             moveButton.setDisable(true);
             deleteButton.setDisable(true);
+            zoomButton.setDisable(true);
             leftButton.setDisable(true);
             rightButton.setDisable(true);
             saveCaptionButton.setDisable(true);
@@ -142,6 +182,60 @@ public class PhotoController extends Controller {
 
     }
 
+    /**
+     * Show a photo in the slideshow. Its thumbnail is shown until the preview is loaded,
+     * and the previews of the photos around it are loaded in the background.
+     * @param photo Selected photo.
+     */
+    protected void showPreview(Photo photo){
+        try {
+            imageView.setImage(ThumbnailCache.get(photo.getDirectory()));
+        } catch (FileNotFoundException e) {
+            imageView.setImage(null);
+        }
+        int index = tableView.getSelectionModel().getSelectedIndex();
+        previews.select(tableView.getItems(), index, image -> Platform.runLater(() -> {
+            // Only show the preview if the photo is still selected.
+            if (image != null && tableView.getSelectionModel().getSelectedItem() == photo){
+                imageView.setImage(image);
+            }
+        }));
+    }
+
+    /**
+     * Keep the rows of the grid view in step with the photos in the table. Only the number
+     * of rows is stored, and the rows on screen are redrawn.
+     */
+    protected void updateGrid(){
+        int rows = (tableView.getItems().size() + gridColumns - 1) / gridColumns;
+        ObservableList<Integer> items = gridView.getItems();
+        if (items.size() > rows){
+            items.remove(rows, items.size());
+        }
+        if (items.size() < rows){
+            List<Integer> added = new ArrayList<Integer>(rows - items.size());
+            for (int i = items.size(); i < rows; i++){
+                added.add(i);
+            }
+            items.addAll(added);
+        }
+        gridView.refresh();
+    }
+
+    /**
+     * Handle switching between the table and the grid view of the photos.
+     * @param actionEvent
+     */
+    public void handleGrid(ActionEvent actionEvent) {
+        boolean grid = gridToggle.isSelected();
+        gridView.setVisible(grid);
+        tableView.setVisible(!grid);
+        int photoIndex = tableView.getSelectionModel().getSelectedIndex();
+        if (grid && photoIndex >= 0){
+            gridView.scrollTo(photoIndex / gridColumns);
+        }
+    }
+
     protected void initData(User currentUser, Album currentAlbum, Database db) {
         setFields(currentUser,currentAlbum, db);
         photos = currentAlbum.getPhotos();
@@ -149,6 +243,9 @@ public class PhotoController extends Controller {
             // Shouldn't happen, but just in case.
             showError("User or album could not be properly loaded.");
         }
+        else if (currentUser.isReadOnly()){
+            handleDBStatus(DBStatus.READ_ONLY);
+        }
         // Set up the preset tags.
         // Not the best way to do this but will work for now.
         List<String> tagsToStrings = new ArrayList<String>();
@@ -187,11 +284,196 @@ public class PhotoController extends Controller {
             return;
             //e.printStackTrace();
         }
-        db.addPhoto(currentUser, currentAlbum, photo);
-        tableView.getItems().setAll(photos);
+
+        // Check if this photo is already in the user's library. That means reading every
+        // album and the size of every photo, then the whole file and any others of the
+        // same size, so it is done in the background.
+        User user = currentUser;
+        Album album = currentAlbum;
+        Photo toAdd = photo;
+        Task<Photo> check = new Task<Photo>() {
+            @Override
+            protected Photo call() {
+                return db.getDuplicateFinder(user).find(toAdd);
+            }
+        };
+        check.setOnSucceeded(event -> {
+            addButton.setDisable(false);
+            addChecked(user, album, toAdd, check.getValue());
+        });
+        check.setOnFailed(event -> {
+            addButton.setDisable(false);
+            addChecked(user, album, toAdd, null);
+        });
+        addButton.setDisable(true);
+        Thread thread = new Thread(check, "duplicate-check");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Add a photo to an album once it has been checked against the user's library.
+     * @param user User adding the photo.
+     * @param album Album to add it to.
+     * @param photo Photo to add.
+     * @param existing Photo in the library with the same contents, or null if there is none.
+     */
+    private void addChecked(User user, Album album, Photo photo, Photo existing){
+        if (existing != null){
+            if (album.getPhotos().contains(existing)){
+                showError("This photo is already in this album.");
+                return;
+            }
+            PhotoImporter.Duplicates choice = askDuplicates("This photo is already in your library.");
+            if (choice == null || choice == PhotoImporter.Duplicates.SKIP){
+                return;
+            }
+            if (choice == PhotoImporter.Duplicates.LINK){
+                photo = existing;
+            }
+        }
+        DBStatus attempt = db.addPhoto(user, album, photo);
+        if (attempt != DBStatus.SUCCESS){
+            handleDBStatus(attempt);
+            return;
+        }
+        tableView.getItems().add(photo);
         tableView.getSelectionModel().select(photos.size()-1);
     }
 
+    /**
+     * Handle when the user wants to import every photo in a folder and its subfolders.
+     * The photos are made in the background and added to the album in batches, while a
+     * dialog shows the progress and lets the user cancel.
+     * @param actionEvent Action event for the import button.
+     */
+    public void handleImport(ActionEvent actionEvent) {
+
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Import a folder");
+        File folder = chooser.showDialog(importButton.getScene().getWindow());
+        if (folder == null){
+            return;
+        }
+
+        // Find and make the photos in the background, adding each batch on the FX thread.
+        User user = currentUser;
+        Album album = currentAlbum;
+        AtomicReference<PhotoImporter> importer = new AtomicReference<PhotoImporter>();
+        Task<Integer> task = new Task<Integer>() {
+            @Override
+            protected Integer call() throws Exception {
+                updateMessage("Looking for photos...");
+                List<Path> paths = PhotoImporter.findPhotos(folder.toPath());
+                PhotoImporter photoImporter = new PhotoImporter(paths);
+                // Only ask about duplicates if there are any, waiting for the answer here.
+                photoImporter.setDuplicates(db.getDuplicateFinder(user), () -> {
+                    FutureTask<PhotoImporter.Duplicates> ask = new FutureTask<PhotoImporter.Duplicates>(
+                            () -> askDuplicates("Some of these photos are already in your library."));
+                    Platform.runLater(ask);
+                    try {
+                        return ask.get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        return null;
+                    }
+                });
+                importer.set(photoImporter);
+                int total = paths.size();
+                updateProgress(0, total);
+                return photoImporter.importAll(batch -> {
+                    FutureTask<DBStatus> add = new FutureTask<DBStatus>(() -> db.addPhotos(user, album, batch));
+                    Platform.runLater(add);
+                    try {
+                        add.get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        photoImporter.cancel();
+                    }
+                }, done -> {
+                    updateProgress(done, total);
+                    updateMessage("Imported " + done + " of " + total + " photos...");
+                });
+            }
+        };
+
+        // Show the progress.
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.setPrefWidth(300);
+        progressBar.progressProperty().bind(task.progressProperty());
+        Label progressLabel = new Label();
+        progressLabel.textProperty().bind(task.messageProperty());
+        GridPane grid = new GridPane();
+        grid.add(progressLabel, 1, 1);
+        grid.add(progressBar, 1, 2);
+        Alert progress = new Alert(Alert.AlertType.INFORMATION, "", ButtonType.CANCEL);
+        progress.setTitle("Import photos");
+        progress.setHeaderText("Importing " + folder.getName());
+        progress.getDialogPane().setContent(grid);
+        progress.setOnHidden(event -> {
+            if (!task.isDone()){
+                // Let the batch being added finish, or stop looking for photos.
+                if (importer.get() != null){
+                    importer.get().cancel();
+                }
+                else{
+                    task.cancel(true);
+                }
+            }
+        });
+
+        // Refresh the table when the import is done, however it ended.
+        task.setOnSucceeded(event -> {
+            progress.close();
+            tableView.getItems().setAll(photos);
+            if (importer.get().isCancelled()){
+                showSuccess("Import canceled. The " + task.getValue() + " photos imported so far were kept.");
+            }
+            else{
+                showSuccess("Imported " + task.getValue() + " photos.");
+            }
+        });
+        task.setOnCancelled(event -> {
+            progress.close();
+            tableView.getItems().setAll(photos);
+            showSuccess("Import canceled.");
+        });
+        task.setOnFailed(event -> {
+            progress.close();
+            tableView.getItems().setAll(photos);
+            showError("The folder could not be imported.");
+        });
+
+        Thread thread = new Thread(task, "photo-import-walker");
+        thread.setDaemon(true);
+        thread.start();
+        progress.show();
+    }
+
+    /**
+     * Ask the user what to do with photos that are already in their library.
+     * @param header Header of the dialog.
+     * @return LINK, SKIP or KEEP, or null if the user canceled.
+     */
+    private PhotoImporter.Duplicates askDuplicates(String header){
+        ButtonType link = new ButtonType("Link");
+        ButtonType skip = new ButtonType("Skip");
+        ButtonType keep = new ButtonType("Add anyway");
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION,
+                "Link to the photo already in your library, skip it, or add it as a new photo?",
+                link, skip, keep, ButtonType.CANCEL);
+        alert.setHeaderText(header);
+        alert.showAndWait();
+        if (alert.getResult() == link){
+            return PhotoImporter.Duplicates.LINK;
+        }
+        else if (alert.getResult() == skip){
+            return PhotoImporter.Duplicates.SKIP;
+        }
+        else if (alert.getResult() == keep){
+            return PhotoImporter.Duplicates.KEEP;
+        }
+        return null;
+    }
+
     /**
      * Handle when the user wants to go back to the login page.
      * @param actionEvent Action event for the back button.
@@ -238,13 +520,12 @@ public class PhotoController extends Controller {
                 System.out.println("Something went wrong with getting the album reference");
                 return false;
             }
-            try{
-                Photo currPhoto = (Photo) tableView.getSelectionModel().getSelectedItem();
-                Photo currPhotoClone = (Photo) currPhoto.clone();
-                destAlbum.addPhoto(currPhotoClone);
-            }catch(CloneNotSupportedException e){
-                showSuccess("Clone failed");
-                e.printStackTrace();
+            // Both albums share the photo, so its caption and tags stay the same in each.
+            Photo currPhoto = tableView.getSelectionModel().getSelectedItem();
+            DBStatus attempt = db.addPhoto(currentUser, destAlbum, currPhoto);
+            if (attempt != DBStatus.SUCCESS){
+                handleDBStatus(attempt);
+                return false;
             }
             showSuccess(cloneType + ": success!");
             return true;
@@ -278,9 +559,46 @@ public class PhotoController extends Controller {
      * @param actionEvent
      */
     public void handleDelete(ActionEvent actionEvent) {
-        currentAlbum.getPhotos().remove(tableView.getSelectionModel().getSelectedItem());
-        tableView.getItems().setAll(photos);
-        currentAlbum.updateDate();
+        int photoIndex = tableView.getSelectionModel().getSelectedIndex();
+        Photo photo = tableView.getSelectionModel().getSelectedItem();
+        DBStatus attempt = db.deletePhoto(currentUser, currentAlbum, photo);
+        if (attempt != DBStatus.SUCCESS){
+            handleDBStatus(attempt);
+            return;
+        }
+        tableView.getItems().remove(photoIndex);
+    }
+
+    /**
+     * Handle when the user wants to look at the selected photo up close. Opens the zoom
+     * view in its own window.
+     * @param actionEvent
+     */
+    public void handleZoom(ActionEvent actionEvent) {
+        Photo photo = tableView.getSelectionModel().getSelectedItem();
+        if (photo == null){
+            return;
+        }
+        FXMLLoader loader = new FXMLLoader(getClass().getResource(zoomScene));
+        Parent root;
+        try {
+            root = loader.load();
+        } catch (IOException e) {
+            showError("Could not open the zoom view. Please try again later.");
+            return;
+        }
+        ZoomController controller = loader.getController();
+        controller.initData(currentUser, currentAlbum, db);
+        if (!controller.setPhoto(photo)){
+            showError("This photo cannot be zoomed into.");
+            return;
+        }
+        Stage stage = new Stage();
+        stage.initOwner(zoomButton.getScene().getWindow());
+        stage.setTitle(photo.getCaption());
+        stage.setScene(new Scene(root));
+        stage.setOnHidden(e -> controller.close());
+        stage.show();
     }
 
     /**
@@ -304,17 +622,22 @@ public class PhotoController extends Controller {
 
     @FXML
     protected void handleSaveCaption(ActionEvent actionEvent){
-        Photo photo = (Photo) tableView.getSelectionModel().getSelectedItem();
+        Photo photo = tableView.getSelectionModel().getSelectedItem();
         String caption = captionTextField.getText();
         if(!caption.isEmpty()){
-            photo.setCaption(caption);
+            DBStatus attempt = db.setCaption(currentUser, currentAlbum, photo, caption);
+            if (attempt != DBStatus.SUCCESS){
+                handleDBStatus(attempt);
+                return;
+            }
         }
         else{
             showError("You cannot rename a photo to an empty caption.");
             return;
         }
         showSuccess("Successfully saved caption!");
-        tableView.getItems().setAll(photos);
+        // Only the caption changed, so just redraw the rows on screen.
+        tableView.refresh();
     }
 
     @FXML
@@ -351,13 +674,19 @@ public class PhotoController extends Controller {
             showError("= is not a valid character in a tag.");
             return;
         }
+        // Custom tags decide for themselves if they allow multiple values.
+        boolean custom = presetTags.getValue().toString().equals(Tag.custom);
+        if (custom){
+            multiple = showWarning("Does this tag allow for multiple values?");
+        }
         Tag newTag = new Tag(tagTypeText, tagValueText, multiple);
 
         // Attempt to add the tag.
-        Photo photo = (Photo) tableView.getSelectionModel().getSelectedItem();
-        DBStatus attempt = db.addTag(photo, newTag);
+        Photo photo = tableView.getSelectionModel().getSelectedItem();
+        DBStatus attempt = db.addTag(currentUser, currentAlbum, photo, newTag);
         if (attempt == DBStatus.SUCCESS){
-            tableView.getItems().setAll(photos);
+            tags = photo.getTagsList();
+            tagTableView.getItems().setAll(tags);
             //System.out.println(photo.hasTag(new Tag(tagTypeText, tagValueText)));
             //Clean up and message
             tagType.setText("");
@@ -365,17 +694,9 @@ public class PhotoController extends Controller {
             showSuccess("Successfully Added a new tag!");
 
             // Ask the user if they want to save the new tag.
-            if (presetTags.getValue().toString().equals(Tag.custom)) {
-                if (showWarning("Do you want to save your new custom tag?")){
-                    currentUser.getCreatedTags().add(newTag);
-                    presetTags.getItems().add(newTag.name);
-                }
-                if (showWarning("Does this tag allow for multiple values?")){
-                    newTag.setMultiple(true);
-                }
-                else{
-                    newTag.setMultiple(false);
-                }
+            if (custom && showWarning("Do you want to save your new custom tag?")){
+                db.addCreatedTag(currentUser, newTag);
+                presetTags.getItems().add(newTag.name);
             }
         }
         else{
@@ -392,8 +713,13 @@ public class PhotoController extends Controller {
 
     @FXML
     protected void handleDeleteTags(ActionEvent actionEvent, Tag tag){
-        //TODO: validate that this is in synced with DB
-        tags.remove(tag);
+        Photo photo = tableView.getSelectionModel().getSelectedItem();
+        DBStatus attempt = db.deleteTag(currentUser, currentAlbum, photo, tag);
+        if (attempt != DBStatus.SUCCESS){
+            handleDBStatus(attempt);
+            return;
+        }
+        tags = photo.getTagsList();
         tagTableView.getItems().setAll(tags);
     }
 
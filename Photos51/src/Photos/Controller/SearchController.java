@@ -3,6 +3,7 @@ package Photos.Controller;
 import Photos.Model.*;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.BooleanBinding;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.value.ChangeListener;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
@@ -48,7 +49,7 @@ public class SearchController extends Controller{
     @FXML private Button rightButton;
 
     @FXML private ImageView imageView;
-    @FXML private TableColumn<Photo, ImageView> thumbColumn;
+    @FXML private TableColumn<Photo, Photo> thumbColumn;
     @FXML private TableColumn<Photo, String> captionColumn;
 
     private List<Photo> photos;
@@ -69,7 +70,8 @@ public class SearchController extends Controller{
         tagButton.disableProperty().bind(invalidLeftTag.or(invalidRightTag));
 
         // Set up the tableView.
-        thumbColumn.setCellValueFactory(new PropertyValueFactory("imageView"));
+        thumbColumn.setCellValueFactory(currPhoto -> new ReadOnlyObjectWrapper<>(currPhoto.getValue()));
+        thumbColumn.setCellFactory(column -> new ThumbnailCell());
         captionColumn.setCellValueFactory(new PropertyValueFactory("caption"));
         // Add listener to selection model
         tableView.getSelectionModel().selectedIndexProperty().addListener((obs, oldVal, newVal) -> selectItem());
@@ -120,44 +122,33 @@ public class SearchController extends Controller{
 
     /**
      * Handles when the user wants to search for photos by tags.
-     * Conjunctions and Disjunctions will only be used if the operations combo
-     * box is appropriately used.
+     * The left field can hold a whole query, such as
+     * (person=alice OR person=bob) AND location=paris AND NOT mood=sad.
+     * If the operations combo box is used, the two fields are joined with it.
      * @param event
      */
     public void handleTagSearch(ActionEvent event){
 
-        // Get input from the user and check if both (or one) are valid.
-        String input1 = removeWhitespaces(tag1.getText());
-        String input2 = removeWhitespaces(tag2.getText());
-        Tag t1 = Tag.stringToTag(input1);
-        Tag t2 = Tag.stringToTag(input2);
+        // Get input from the user and build the query.
+        String input1 = tag1.getText().trim();
+        String input2 = tag2.getText().trim();
         String op = operation.getValue();
-        if (t1 == null) {
-            showError("Invalid input. Please write tags in the following format: tag=value");
+        String input = input1;
+        if (op.equals(conjunction) || op.equals(disjunction)){
+            input = "(" + input1 + ") " + op + " (" + input2 + ")";
+        }
+        TagQuery query;
+        try {
+            query = TagQuery.parse(input);
+        } catch (ParseException e) {
+            showError("Invalid input: " + e.getMessage() + ". Please write tags in the following format: tag=value, " +
+                    "joined with and, or, not and parentheses. Spaces are allowed in tags, and tags or values " +
+                    "with and, or, not or parentheses in them can be put in quotes.");
             return;
         }
-        List<Photo> found = null;
+
         // Good to start the search!
-        if (op.equals(noOp)){
-            found = db.searchByTag(currentUser, t1);
-        }
-        else{
-            // Last minute check.
-            if (t2 == null){
-                showError("Invalid input. Please write tags in the following format: tag=value. Spaces are allowed in tags.");
-                return;
-            }
-            if (op.equals(conjunction)){
-                found = db.searchByTagConjunctive(currentUser, t1, t2);
-            }
-            else if (op.equals(disjunction)){
-                found = db.searchByTagDisjunctive(currentUser, t1, t2);
-            }
-            else{
-                //????
-            }
-        }
-        photos = found;
+        photos = db.searchByTagQuery(currentUser, query);
         if (photos.isEmpty()){
             showError("No photos found.");
         }
@@ -172,7 +163,8 @@ public class SearchController extends Controller{
         if(!tableView.getItems().isEmpty()){
             //Populate photo detailed view
             Photo photo = (Photo) tableView.getSelectionModel().getSelectedItem();
-            imageView.setImage(new Image(photo.getPath()));
+            imageView.setImage(ImageDecoder.decodeLater(new File(photo.getDirectory()),
+                    imageView.getFitWidth(), imageView.getFitHeight()));
             leftButton.setDisable(false);
             rightButton.setDisable(false);
         }else{
@@ -0,0 +1,76 @@
+package Photos.Controller;
+
+import Photos.Model.Photo;
+import Photos.Model.ThumbnailCache;
+import javafx.application.Platform;
+import javafx.scene.control.TableCell;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+
+import java.util.concurrent.Future;
+
+/**
+ * Table cell that shows the thumbnail of a photo.
+ * Each cell keeps one ImageView and reuses it for whichever photo it shows as the table
+ * scrolls, and the thumbnails come from the ThumbnailCache. Photos themselves hold no
+ * views or images, so memory use follows the rows on screen and not the number of photos.
+ * Thumbnails that are not cached yet are loaded in the background, and the load is
+ * cancelled if the cell is reused for another photo first.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+class ThumbnailCell extends TableCell<Photo, Photo> {
+
+    private final ImageView imageView;
+    private Photo shown;
+    private Future<Image> load;
+
+    /**
+     * Constructor for an empty cell.
+     */
+    ThumbnailCell(){
+        imageView = new ImageView();
+        imageView.setFitWidth(ThumbnailCache.thumbnailWidth);
+        imageView.setPreserveRatio(true);
+    }
+
+    @Override
+    protected void updateItem(Photo photo, boolean empty){
+        super.updateItem(photo, empty);
+        if (empty || photo == null){
+            show(null);
+            setGraphic(null);
+            return;
+        }
+        show(photo);
+        setGraphic(imageView);
+    }
+
+    /**
+     * Show a photo in the cell, cancelling the load of the photo it showed before if it
+     * is a different one.
+     * @param photo Photo to show, or null to leave the cell empty.
+     */
+    private void show(Photo photo){
+        if (photo == shown){
+            return;
+        }
+        ThumbnailCache.cancel(load);
+        load = null;
+        shown = photo;
+        if (photo == null){
+            imageView.setImage(null);
+            return;
+        }
+        Image thumbnail = ThumbnailCache.peek(photo.getDirectory());
+        imageView.setImage(thumbnail);
+        if (thumbnail == null){
+            load = ThumbnailCache.load(photo.getDirectory(), image -> Platform.runLater(() -> {
+                // The cell may have been reused for another photo while this one loaded.
+                if (shown == photo){
+                    imageView.setImage(image);
+                }
+            }));
+        }
+    }
+}
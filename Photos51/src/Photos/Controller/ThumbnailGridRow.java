@@ -0,0 +1,142 @@
+package Photos.Controller;
+
+import Photos.Model.Photo;
+import Photos.Model.ThumbnailCache;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.WeakChangeListener;
+import javafx.geometry.Pos;
+import javafx.scene.control.ListCell;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * One row of the thumbnail grid. The grid is a ListView of row numbers, so only the rows
+ * on screen have cells, and each cell is reused for other rows as the grid scrolls.
+ * A row keeps one ImageView per column. Thumbnails that are not cached yet are loaded in
+ * the background, and loads for photos that scroll out of view are cancelled.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+class ThumbnailGridRow extends ListCell<Integer> {
+
+    private static final double gap = 8;
+    private static final String selectedStyle = "-fx-border-color: #0096c9; -fx-border-width: 3;";
+
+    private final List<Photo> photos;
+    private final int columns;
+    private final ReadOnlyIntegerProperty selected;
+    private final HBox row;
+    private final StackPane[] slots;
+    private final ImageView[] views;
+    private final Photo[] shown;
+    private final List<Future<Image>> loads;
+    private final ChangeListener<Number> selectionListener;
+
+    /**
+     * Constructor for an empty row.
+     * @param photos Photos in the grid, in order.
+     * @param columns Number of photos in a row.
+     * @param selected Index of the selected photo, which is highlighted.
+     * @param onClick Called with the index of a photo when it is clicked.
+     */
+    ThumbnailGridRow(List<Photo> photos, int columns, ReadOnlyIntegerProperty selected, IntConsumer onClick){
+        this.photos = photos;
+        this.columns = columns;
+        this.selected = selected;
+        row = new HBox(gap);
+        slots = new StackPane[columns];
+        views = new ImageView[columns];
+        shown = new Photo[columns];
+        loads = new ArrayList<Future<Image>>(columns);
+        for (int i = 0; i < columns; i++){
+            loads.add(null);
+            views[i] = new ImageView();
+            views[i].setFitWidth(ThumbnailCache.thumbnailWidth);
+            views[i].setFitHeight(ThumbnailCache.thumbnailWidth);
+            views[i].setPreserveRatio(true);
+            slots[i] = new StackPane(views[i]);
+            slots[i].setPrefSize(ThumbnailCache.thumbnailWidth + 6, ThumbnailCache.thumbnailWidth + 6);
+            slots[i].setAlignment(Pos.CENTER);
+            int column = i;
+            slots[i].setOnMouseClicked(e -> {
+                Integer index = getItem();
+                if (index != null && shown[column] != null){
+                    onClick.accept(index * columns + column);
+                }
+            });
+            row.getChildren().add(slots[i]);
+        }
+        // Held weakly, so rows the grid throws away do not stay alive through the selection.
+        selectionListener = (obs, oldVal, newVal) -> highlight();
+        selected.addListener(new WeakChangeListener<Number>(selectionListener));
+    }
+
+    @Override
+    protected void updateItem(Integer index, boolean empty){
+        super.updateItem(index, empty);
+        setText(null);
+        if (empty || index == null){
+            for (int i = 0; i < columns; i++){
+                show(i, null);
+            }
+            setGraphic(null);
+            return;
+        }
+        int first = index * columns;
+        for (int i = 0; i < columns; i++){
+            int photoIndex = first + i;
+            show(i, photoIndex < photos.size() ? photos.get(photoIndex) : null);
+        }
+        highlight();
+        setGraphic(row);
+    }
+
+    /**
+     * Highlight the selected photo if it is in this row.
+     */
+    private void highlight(){
+        Integer index = getItem();
+        int column = index == null ? -1 : selected.get() - index * columns;
+        for (int i = 0; i < columns; i++){
+            slots[i].setStyle(i == column && shown[i] != null ? selectedStyle : "");
+        }
+    }
+
+    /**
+     * Show a photo in one column of the row, cancelling the load of the photo it showed
+     * before if it is a different one.
+     * @param column Column to show it in.
+     * @param photo Photo to show, or null to leave the column empty.
+     */
+    private void show(int column, Photo photo){
+        if (photo == shown[column]){
+            return;
+        }
+        ThumbnailCache.cancel(loads.get(column));
+        loads.set(column, null);
+        shown[column] = photo;
+        if (photo == null){
+            views[column].setImage(null);
+            return;
+        }
+        Image thumbnail = ThumbnailCache.peek(photo.getDirectory());
+        views[column].setImage(thumbnail);
+        if (thumbnail == null){
+            loads.set(column, ThumbnailCache.load(photo.getDirectory(), image -> Platform.runLater(() -> {
+                // The cell may have been reused for another photo while this one loaded.
+                if (shown[column] == photo){
+                    views[column].setImage(image);
+                }
+            })));
+        }
+    }
+}
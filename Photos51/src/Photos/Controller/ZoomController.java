@@ -0,0 +1,262 @@
+package Photos.Controller;
+
+import Photos.Model.*;
+import javafx.application.Platform;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.image.Image;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Handles the zoom view, which opens in its own window to look at one photo up close.
+ * The photo is drawn from tiles that are loaded for the part of the photo on screen, at
+ * the detail the zoom level needs, so even very large photos are never decoded whole.
+ * The thumbnail of the photo is drawn behind the tiles until they are loaded.
+ * Users zoom with the scroll wheel or the buttons, and pan by dragging.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class ZoomController extends Controller {
+
+    private static final double zoomStep = 1.25;
+    private static final double maxScale = 8;
+
+    /**
+     * Number of tiles around the screen to load ahead of panning.
+     */
+    private static final int tileRing = 1;
+
+    @FXML protected Button zoomInButton;
+    @FXML protected Button zoomOutButton;
+    @FXML protected Button fitButton;
+    @FXML protected Label zoomLabel;
+    @FXML protected Pane viewport;
+    @FXML protected Canvas canvas;
+
+    private TileLoader tiles;
+    private Image overview;
+    private final AtomicBoolean redrawQueued = new AtomicBoolean();
+
+    /**
+     * Pixels on screen per pixel of the photo.
+     */
+    private double scale;
+
+    /**
+     * Point of the photo at the top left corner of the screen.
+     */
+    private double offsetX;
+    private double offsetY;
+
+    private double dragX;
+    private double dragY;
+    private boolean fitted;
+
+    /**
+     * Init the scene by sizing the canvas with the window and handling the mouse.
+     */
+    @FXML private void initialize(){
+        canvas.widthProperty().bind(viewport.widthProperty());
+        canvas.heightProperty().bind(viewport.heightProperty());
+        canvas.widthProperty().addListener((obs, oldVal, newVal) -> resized());
+        canvas.heightProperty().addListener((obs, oldVal, newVal) -> resized());
+
+        canvas.setOnScroll(e -> zoom(e.getDeltaY() > 0 ? zoomStep : 1 / zoomStep, e.getX(), e.getY()));
+        canvas.setOnMousePressed(e -> {
+            dragX = e.getX();
+            dragY = e.getY();
+        });
+        canvas.setOnMouseDragged(e -> {
+            offsetX -= (e.getX() - dragX) / scale;
+            offsetY -= (e.getY() - dragY) / scale;
+            dragX = e.getX();
+            dragY = e.getY();
+            update();
+        });
+    }
+
+    @Override
+    protected void initData(User currentUser, Album currentAlbum, Database db) {
+        setFields(currentUser, currentAlbum, db);
+    }
+
+    /**
+     * Set the photo to look at.
+     * @param photo Photo to show.
+     * @return True if the photo can be shown, false elsewise.
+     */
+    protected boolean setPhoto(Photo photo){
+        try {
+            tiles = TileLoader.open(photo);
+        } catch (IOException e) {
+            tiles = null;
+        }
+        if (tiles == null){
+            return false;
+        }
+        try {
+            overview = ThumbnailCache.get(photo.getDirectory());
+        } catch (FileNotFoundException e) {
+            overview = null;
+        }
+        // Tiles load in the background, so redraw once for all that finish before the next frame.
+        tiles.setListener(() -> {
+            if (redrawQueued.compareAndSet(false, true)){
+                Platform.runLater(() -> {
+                    redrawQueued.set(false);
+                    draw();
+                });
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Stop loading tiles. Called when the window is closed.
+     */
+    protected void close(){
+        if (tiles != null){
+            tiles.close();
+        }
+    }
+
+    /**
+     * Handle zooming in on the middle of the screen.
+     * @param actionEvent
+     */
+    public void handleZoomIn(ActionEvent actionEvent) {
+        zoom(zoomStep, canvas.getWidth() / 2, canvas.getHeight() / 2);
+    }
+
+    /**
+     * Handle zooming out from the middle of the screen.
+     * @param actionEvent
+     */
+    public void handleZoomOut(ActionEvent actionEvent) {
+        zoom(1 / zoomStep, canvas.getWidth() / 2, canvas.getHeight() / 2);
+    }
+
+    /**
+     * Handle fitting the whole photo on screen.
+     * @param actionEvent
+     */
+    public void handleFit(ActionEvent actionEvent) {
+        fit();
+        update();
+    }
+
+    /**
+     * Fit the photo on screen when the window is first shown, and keep the view up to
+     * date when it is resized.
+     */
+    private void resized(){
+        if (tiles == null || canvas.getWidth() <= 0 || canvas.getHeight() <= 0){
+            return;
+        }
+        if (!fitted){
+            fitted = true;
+            fit();
+        }
+        update();
+    }
+
+    /**
+     * Zoom so the whole photo fits on screen, centered. Small photos are not made bigger.
+     */
+    private void fit(){
+        scale = Math.min(1, fitScale());
+        offsetX = (tiles.getWidth() - canvas.getWidth() / scale) / 2;
+        offsetY = (tiles.getHeight() - canvas.getHeight() / scale) / 2;
+    }
+
+    /**
+     * Get the scale at which the whole photo fits on screen.
+     * @return Scale.
+     */
+    private double fitScale(){
+        return Math.min(canvas.getWidth() / tiles.getWidth(), canvas.getHeight() / tiles.getHeight());
+    }
+
+    /**
+     * Zoom in or out, keeping the point under the given place on screen where it is.
+     * Zooming out stops once the photo fits on screen.
+     * @param factor Amount to multiply the scale by.
+     * @param x Place on screen to zoom around.
+     * @param y Place on screen to zoom around.
+     */
+    private void zoom(double factor, double x, double y){
+        if (tiles == null){
+            return;
+        }
+        double pointX = offsetX + x / scale;
+        double pointY = offsetY + y / scale;
+        scale = Math.max(Math.min(1, fitScale()), Math.min(maxScale, scale * factor));
+        offsetX = pointX - x / scale;
+        offsetY = pointY - y / scale;
+        update();
+    }
+
+    /**
+     * Load the tiles for the current view and draw it.
+     */
+    private void update(){
+        if (tiles == null){
+            return;
+        }
+        int level = TileLoader.levelFor(scale);
+        int span = TileLoader.span(level);
+        tiles.request(level,
+                (int) Math.floor(Math.max(0, offsetX) / span),
+                (int) Math.floor(Math.max(0, offsetY) / span),
+                (int) Math.floor((offsetX + canvas.getWidth() / scale) / span),
+                (int) Math.floor((offsetY + canvas.getHeight() / scale) / span),
+                tileRing);
+        zoomLabel.setText(Math.round(scale * 100) + "%");
+        draw();
+    }
+
+    /**
+     * Draw the loaded tiles of the current view over the thumbnail.
+     */
+    private void draw(){
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.setFill(Color.BLACK);
+        g.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (tiles == null){
+            return;
+        }
+        int width = tiles.getWidth();
+        int height = tiles.getHeight();
+        if (overview != null){
+            g.drawImage(overview, -offsetX * scale, -offsetY * scale, width * scale, height * scale);
+        }
+
+        int level = TileLoader.levelFor(scale);
+        int span = TileLoader.span(level);
+        int firstCol = (int) Math.floor(Math.max(0, offsetX) / span);
+        int firstRow = (int) Math.floor(Math.max(0, offsetY) / span);
+        int lastCol = (int) Math.min((width - 1) / span, Math.floor((offsetX + canvas.getWidth() / scale) / span));
+        int lastRow = (int) Math.min((height - 1) / span, Math.floor((offsetY + canvas.getHeight() / scale) / span));
+        for (int row = firstRow; row <= lastRow; row++){
+            for (int col = firstCol; col <= lastCol; col++){
+                Image tile = tiles.get(level, col, row);
+                if (tile == null){
+                    continue;
+                }
+                double x = col * span;
+                double y = row * span;
+                g.drawImage(tile, (x - offsetX) * scale, (y - offsetY) * scale,
+                        Math.min(span, width - x) * scale, Math.min(span, height - y) * scale);
+            }
+        }
+    }
+}
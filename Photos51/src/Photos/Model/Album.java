@@ -2,6 +2,7 @@ package Photos.Model;
 
 import javafx.util.Pair;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -20,6 +21,7 @@ public class Album implements Serializable , Cloneable{
     private List<Photo> photos;
     private Calendar creationDate; // May not be needed
     public String dateModified;
+    private transient DatabaseReader.PhotoBlock photoBlock;
 
     /**
      * Constructor for the Album.
@@ -38,14 +40,39 @@ public class Album implements Serializable , Cloneable{
      * @return
      */
     public List<Photo> getPhotos(){
+        if (photoBlock != null){
+            // First time this album is opened, so read its photos from the database file.
+            DatabaseReader.PhotoBlock toLoad = photoBlock;
+            photoBlock = null;
+            try {
+                photos = toLoad.read();
+            } catch (IOException e) {
+                // That part of the file is corrupt, so the album is shown empty. Its user is
+                // now read-only, and the file is saved again as it is.
+                photos = new ArrayList<Photo>();
+            }
+        }
         return photos;
     }
 
+    /**
+     * Leave the photos of this album in the database file until they are first needed.
+     * @param photoBlock Part of the database file that holds them.
+     * @param dateModified Date range of the photos, as saved with the album.
+     */
+    void setPhotoBlock(DatabaseReader.PhotoBlock photoBlock, String dateModified){
+        this.photoBlock = photoBlock;
+        this.dateModified = dateModified;
+    }
+
     /**
      * Return the number of photos.
      * @return
      */
     public int getNumPhotos(){
+        if (photoBlock != null){
+            return photoBlock.getNumPhotos();
+        }
         if (photos == null){
             return 0;
         }
@@ -69,7 +96,25 @@ public class Album implements Serializable , Cloneable{
     }
 
     /**
-     * Set the name of this album
+     * Return the date this album was created.
+     * @return
+     */
+    public Calendar getCreationDate(){
+        return creationDate;
+    }
+
+    /**
+     * Set the date this album was created. Used when loading the album from a file.
+     * @param creationDate Date to set.
+     */
+    void setCreationDate(Calendar creationDate){
+        this.creationDate = creationDate;
+        updateDate();
+    }
+
+    /**
+     * Set the name of this album. Albums that belong to a user should be renamed
+     * through Database.renameAlbum instead, so the user can still find it by name.
      * @param name Name to set.
      */
     public void setName(String name){
@@ -94,6 +139,7 @@ public class Album implements Serializable , Cloneable{
      * in the album.
      */
     public void updateDate(){
+        List<Photo> photos = getPhotos();
         if (photos.isEmpty()) {
             dateModified = format(creationDate);
         }
@@ -127,7 +173,7 @@ public class Album implements Serializable , Cloneable{
      * @param photo
      */
     public void addPhoto(Photo photo){
-        photos.add(photo);
+        getPhotos().add(photo);
         updateDate();
     }
 
@@ -136,6 +182,7 @@ public class Album implements Serializable , Cloneable{
      * @param photos
      */
     public void setPhotos(List<Photo> photos){
+        this.photoBlock = null;
         this.photos = photos;
         updateDate();
     }
@@ -12,9 +12,12 @@ public enum DBStatus {
     ADMIN,
     NO_USER,
     NO_ALBUM,
+    NO_PHOTO,
+    DUPLICATE_PHOTO,
     DUPLICATE_ALBUM,
     DUPLICATE_TAG,
     NOT_MULTIPLE_TAG,
     DB_NOT_FOUND,
-    NEW_DB
+    NEW_DB,
+    READ_ONLY
 }
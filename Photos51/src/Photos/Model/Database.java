@@ -2,10 +2,21 @@ package Photos.Model;
 
 import java.io.*;
 
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.ConcurrentModificationException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Database that stores information about the users in the application.
@@ -19,6 +30,9 @@ public class Database implements Serializable{
     private static final long serialVersionUID = 2L;
     private static File storeDir;
     private static final String storeFile = "database.dat";
+    private static final String journalFile = "database.journal";
+    private static final String thumbnailFile = "thumbnails.dat";
+    private static final int compactThreshold = 1000;
     private static final String adminUsername = "admin";
     private static final String adminPassword = "admin";
     private static final User admin = new User(adminUsername, adminPassword);
@@ -30,23 +44,57 @@ public class Database implements Serializable{
 
     private ArrayList<User> users;
 
+    /**
+     * Users by username, kept in sync with the users list so that finding a user does
+     * not have to go through every account.
+     */
+    private transient HashMap<String, User> userIndex;
+
+    /**
+     * Sequence number of the last change made to this database. Saved with the snapshot
+     * so that journal records already in the snapshot are not replayed.
+     */
+    private long journalSeq;
+    private transient long snapshotSeq;
+    private transient Journal journal;
+    private transient PersistenceService persistence;
+    private transient boolean migrated;
+
+    /**
+     * Set when a change could not be recorded in the journal, so the next save has to
+     * take a full snapshot to keep it. Until then, no more changes are journaled.
+     */
+    private transient boolean snapshotNeeded;
+    private transient ThumbnailStore thumbnails;
 
     /**
      * Constructor. Initializes the data structures and attempts to load a file that
      * holds the data.
      */
     public Database() throws FileNotFoundException {
-        users = new ArrayList<User>();
+        setUsers(new ArrayList<User>());
         File fileDir = FileHandler.findPath(storeFile);
         if (fileDir == null){
             // Should never happen, but this is here in case.
         }
         else{
             storeDir = fileDir.getAbsoluteFile();
+            thumbnails = new ThumbnailStore(new File(storeDir.getParentFile(), thumbnailFile));
+            ThumbnailCache.setStore(thumbnails);
             loadDatabase();
         }
     }
 
+    /**
+     * Constructor for the contents read from the database file. Does not load anything.
+     * @param users Users read.
+     * @param journalSeq Sequence number of the last change the users include.
+     */
+    Database(ArrayList<User> users, long journalSeq){
+        this.users = users;
+        this.journalSeq = journalSeq;
+    }
+
     /**
      * Used when loading an entirely new database from the system. Adds the
      * Admin to the database and the stock user, with their photos.
@@ -54,10 +102,12 @@ public class Database implements Serializable{
     private void initStartingData() throws FileNotFoundException {
         if (!exists(admin)){
             users.add(admin);
+            userIndex.put(admin.username, admin);
         }
         if (!exists(stock)){
             //deleteUser(stock);
             users.add(stock);
+            userIndex.put(stock.username, stock);
         }
         Album stockAlbum = new Album(stockImage);
         // Load the stock photos for the stock user.
@@ -66,25 +116,30 @@ public class Database implements Serializable{
             File f = FileHandler.findPath(fileName);
             Photo stockPhoto = new Photo(f.getAbsolutePath());
             stockAlbum.addPhoto(stockPhoto);
+            generateThumbnail(stockPhoto);
         }
         addAlbum(stock, stockAlbum);
 
     }
 
     /**
-     * Get the users from this database.
-     * @return List of Users.
+     * Get the users from this database, in the order they were added.
+     * @return Read-only list of Users.
      */
     public List<User> getUsers(){
-        return users;
+        return Collections.unmodifiableList(users);
     }
 
     /**
-     * Set the users for this database.
+     * Set the users for this database, and index them by username.
      * @param users List of users to set.
      */
     public void setUsers(ArrayList<User> users){
         this.users = users;
+        userIndex = new HashMap<String, User>(users.size() * 2);
+        for (User user : users){
+            userIndex.put(user.username, user);
+        }
     }
 
     /**
@@ -100,6 +155,8 @@ public class Database implements Serializable{
         else{
             // Add the user, along with a new list of albums.
             users.add(user);
+            userIndex.put(user.username, user);
+            log(Journal.Op.ADD_USER, user.username, user.getPassword());
             return true;
         }
     }
@@ -121,6 +178,8 @@ public class Database implements Serializable{
                 return DBStatus.NO_USER;
             }
             users.remove(toDelete);
+            userIndex.remove(toDelete.username);
+            log(Journal.Op.DELETE_USER, toDelete.username);
             return DBStatus.SUCCESS;
         }
     }
@@ -133,12 +192,8 @@ public class Database implements Serializable{
      * @return True if their username and password is in the database, false elsewise.
      */
     public boolean authorize(String username, String password){
-        for (User u : users){
-            if (u.compareUsername(username) == 0 && u.comparePassword(password) == 0){
-                return true;
-            }
-        }
-        return false;
+        User user = getUser(username);
+        return user != null && user.comparePassword(password) == 0;
     }
 
     /**
@@ -147,12 +202,7 @@ public class Database implements Serializable{
      * @return The user to get.
      */
     public User getUser(String username){
-        for (User user: users){
-            if (user.compareUsername(username) == 0){
-                return user;
-            }
-        }
-        return null;
+        return userIndex.get(username);
     }
 
     /**
@@ -161,12 +211,7 @@ public class Database implements Serializable{
      * @return True if they are in the database, false elsewise.
      */
     public boolean exists(User user){
-        for (User u : users){
-            if (user.compareUsername(u) == 0){
-                return true;
-            }
-        }
-        return false;
+        return userIndex.containsKey(user.username);
     }
 
     /**
@@ -209,6 +254,9 @@ public class Database implements Serializable{
         if(thisUser == null){
             return DBStatus.NO_USER;
         }
+        if (isReadOnly(thisUser)){
+            return DBStatus.READ_ONLY;
+        }
         // Make sure there's not duplicates of this album
         Album dupAlbum = getAlbum(thisUser, album);
         if (dupAlbum != null){
@@ -216,7 +264,12 @@ public class Database implements Serializable{
         }
 
         // Everything is good!
-        thisUser.getAlbums().add(album);
+        thisUser.addAlbum(album);
+        log(Journal.Op.ADD_ALBUM, thisUser.username, album.name);
+        List<Photo> photos = album.getPhotos();
+        for (int i = 0; i < photos.size(); i++){
+            logPhoto(thisUser, album, photos.get(i), i);
+        }
         return DBStatus.SUCCESS;
     }
 
@@ -232,21 +285,54 @@ public class Database implements Serializable{
         if (thisUser == null){
             return DBStatus.NO_USER;
         }
-        // Get the user's albums, find the album they want to delete, and delete it!
-        List<Album> userAlbums = thisUser.getAlbums();
+        if (isReadOnly(thisUser)){
+            return DBStatus.READ_ONLY;
+        }
+        // Find the album they want to delete, and delete it!
         Album toDelete = getAlbum(thisUser, album);
         if (toDelete == null){
             return DBStatus.NO_ALBUM;
         }
         else{
-            thisUser.getAlbums().remove(toDelete);
+            thisUser.removeAlbum(toDelete);
+            log(Journal.Op.DELETE_ALBUM, thisUser.username, toDelete.name);
         }
         return DBStatus.SUCCESS;
 
     }
 
     /**
-     * Add a photo to a user's album.
+     * Rename one of a user's albums, as long as no other album has the new name.
+     * @param user User that possesses the album.
+     * @param album The album to rename.
+     * @param name New name of the album.
+     * @return DBStatus of the rename.
+     */
+    public DBStatus renameAlbum(User user, Album album, String name){
+        // Check if this user exists.
+        User thisUser = getUser(user.username);
+        if (thisUser == null){
+            return DBStatus.NO_USER;
+        }
+        if (isReadOnly(thisUser)){
+            return DBStatus.READ_ONLY;
+        }
+        Album toRename = getAlbum(thisUser, album);
+        if (toRename == null){
+            return DBStatus.NO_ALBUM;
+        }
+        // Make sure the new name is not taken.
+        if (getAlbum(thisUser, new Album(name)) != null){
+            return DBStatus.DUPLICATE_ALBUM;
+        }
+        log(Journal.Op.RENAME_ALBUM, thisUser.username, toRename.name, name);
+        thisUser.renameAlbum(toRename, name);
+        return DBStatus.SUCCESS;
+    }
+
+    /**
+     * Add a photo to a user's album. A photo the user already has in another album is
+     * not copied; both albums then hold the same photo, with the same caption and tags.
      * @param user User to have the photo.
      * @param album Album to have the photo.
      * @param photo Photo to add.
@@ -259,19 +345,140 @@ public class Database implements Serializable{
         if (thisUser == null){
             return DBStatus.NO_USER;
         }
+        if (isReadOnly(thisUser)){
+            return DBStatus.READ_ONLY;
+        }
 
         // Get the album in question.
         Album addTo = getAlbum(thisUser, album);
         if (addTo == null){
             return DBStatus.NO_ALBUM;
         }
+        // Only look through the album if the photo is somewhere in the user's library.
+        else if (thisUser.getPhotoCount(photo) > 0 && addTo.getPhotos().contains(photo)){
+            return DBStatus.DUPLICATE_PHOTO;
+        }
         else{
             // Add the photo!
             addTo.addPhoto(photo);
+            thisUser.photoAdded(photo);
+            generateThumbnail(photo);
+            logPhoto(thisUser, addTo, photo, addTo.getPhotos().size() - 1);
+        }
+        return DBStatus.SUCCESS;
+    }
+
+    /**
+     * Add a batch of photos to a user's album, and save the database once for all of them.
+     * Used by imports, where adding photos one at a time would be too slow.
+     * Photos that are already in the album are left out.
+     * @param user User to have the photos.
+     * @param album Album to have the photos.
+     * @param toAdd Photos to add.
+     * @return DBStatus of the add.
+     */
+    public DBStatus addPhotos(User user, Album album, List<Photo> toAdd){
+        User thisUser = getUser(user.username);
+        if (thisUser == null){
+            return DBStatus.NO_USER;
+        }
+        if (isReadOnly(thisUser)){
+            return DBStatus.READ_ONLY;
+        }
+        Album addTo = getAlbum(thisUser, album);
+        if (addTo == null){
+            return DBStatus.NO_ALBUM;
+        }
+        List<Photo> photos = addTo.getPhotos();
+        // Photos linked from elsewhere in the library may already be in this album.
+        Set<Photo> inAlbum = Collections.newSetFromMap(new IdentityHashMap<Photo, Boolean>());
+        inAlbum.addAll(photos);
+        for (Photo photo : toAdd){
+            if (!inAlbum.add(photo)){
+                continue;
+            }
+            photos.add(photo);
+            thisUser.photoAdded(photo);
+            generateThumbnail(photo);
+            logPhoto(thisUser, addTo, photo, photos.size() - 1);
+        }
+        addTo.updateDate();
+        return saveCurrentDatabase();
+    }
+
+    /**
+     * Delete a photo from a user's album.
+     * @param user User that has the photo.
+     * @param album Album that has the photo.
+     * @param photo Photo to delete.
+     * @return DBStatus of the delete.
+     */
+    public DBStatus deletePhoto(User user, Album album, Photo photo){
+        // Get the db's reference to the user and the album.
+        User thisUser = getUser(user.username);
+        if (thisUser == null){
+            return DBStatus.NO_USER;
+        }
+        if (isReadOnly(thisUser)){
+            return DBStatus.READ_ONLY;
+        }
+        Album deleteFrom = getAlbum(thisUser, album);
+        if (deleteFrom == null){
+            return DBStatus.NO_ALBUM;
+        }
+        int index = deleteFrom.getPhotos().indexOf(photo);
+        if (index == -1){
+            return DBStatus.NO_PHOTO;
+        }
+        log(Journal.Op.DELETE_PHOTO, thisUser.username, deleteFrom.name, Integer.toString(index));
+        deleteFrom.getPhotos().remove(index);
+        deleteFrom.updateDate();
+        thisUser.photoRemoved(photo);
+        return DBStatus.SUCCESS;
+    }
+
+    /**
+     * Set the caption of a photo in a user's album.
+     * @param user User that has the photo.
+     * @param album Album that has the photo.
+     * @param photo Photo to caption.
+     * @param caption Caption to set.
+     * @return DBStatus of the edit.
+     */
+    public DBStatus setCaption(User user, Album album, Photo photo, String caption){
+        // Get the db's reference to the user and the album.
+        User thisUser = getUser(user.username);
+        if (thisUser == null){
+            return DBStatus.NO_USER;
+        }
+        if (isReadOnly(thisUser)){
+            return DBStatus.READ_ONLY;
+        }
+        Album thisAlbum = getAlbum(thisUser, album);
+        if (thisAlbum == null){
+            return DBStatus.NO_ALBUM;
         }
+        int index = thisAlbum.getPhotos().indexOf(photo);
+        if (index == -1){
+            return DBStatus.NO_PHOTO;
+        }
+        photo.setCaption(caption);
+        log(Journal.Op.SET_CAPTION, thisUser.username, thisAlbum.name, Integer.toString(index), caption);
         return DBStatus.SUCCESS;
     }
 
+    /**
+     * Check if a user cannot be changed, because some of their albums could not be read
+     * from the database file. All of their albums are read first, so that is found before
+     * the first change is made instead of after.
+     * @param user Database's reference to the user.
+     * @return True if the user is read-only, false elsewise.
+     */
+    private static boolean isReadOnly(User user){
+        user.getPhotoIds();
+        return user.isReadOnly();
+    }
+
     /**
      * Get the reference to an album from this database.
      * @param user User that has this album.
@@ -283,18 +490,7 @@ public class Database implements Serializable{
         if (thisUser == null){
             return null;
         }
-        List<Album> albums = thisUser.getAlbums();
-        if (albums.size() == 0){
-            return null;
-        }
-        else{
-            for (Album a : albums){
-                if (a.compareName(album) == 0){
-                    return a;
-                }
-            }
-        }
-        return null;
+        return thisUser.getAlbumByName(album.name);
     }
 
 //    /**
@@ -324,266 +520,249 @@ public class Database implements Serializable{
 
 
     /**
-     * Search a user's photos by their tags.
+     * Search a user's photos with a query that combines tags with AND, OR and NOT.
      * @param user User that has the photos to be searched.
-     * @param tag Tag to find.
-     * @return List of photos found that has the tag.
+     * @param query Query to run.
+     * @return List of photos found, each listed once, in the order they were added.
      */
-    public List<Photo> searchByTag(User user, Tag tag){
-
-        // Get all the albums of the current user to look at all their photos.
-        String tagName = tag.name;
-        String value = tag.value;
-        List<Photo> found = new ArrayList<>();
+    public List<Photo> searchByTagQuery(User user, TagQuery query){
         User thisUser = getUser(user.username);
-        List<Album> albums = thisUser.getAlbums();
-
-        // Error checking.
-        if (albums == null){
-            return found;
-        }
-        else if (albums.isEmpty()){
-            return found;
-        }
-        else{
-            for (Album a : albums){
-                List<Photo> photos = a.getPhotos();
-                // More error checking!
-                if (photos == null){
-                    continue;
-                }
-                else if (photos.isEmpty()){
-                    continue;
-                }
-                else{
-                    // Loop through the photos.
-                    for (Photo p : photos){
-                        if (p.hasTag(tag)){
-                            found.add(p);
-                        }
-                    }
-                }
-            }
+        if (thisUser == null){
+            return new ArrayList<Photo>();
         }
-        return found;
+        // Only gather every photo if NOT needs them.
+        long[] all = query.usesNot() ? thisUser.getPhotoIds() : null;
+        return thisUser.getPhotos(query.evaluate(thisUser.getTagIndex(), all));
     }
 
     /**
-     * Find photos that have the given 2 tags. Done by taking the intersection of photos that have
-     * the first tag, and photos that have the second tag.
-     * @param user User that has the photos to be searched.
-     * @param tag1 First tag.
-     * @param tag2 Second tag.
-     * @return List of photos that have both tags.
+     * Search for photos by date range. Photos modified exactly on either end are left out,
+     * like Photo.withinDate.
+     * @param user User that has the photos.
+     * @param start Starting date.
+     * @param finish Ending date.
+     * @return List of photos found, oldest first, if any.
      */
-    public List<Photo> searchByTagConjunctive(User user, Tag tag1, Tag tag2){
+    public List<Photo> searchByDate(User user, Calendar start, Calendar finish){
+        User thisUser = getUser(user.username);
+        if (thisUser == null){
+            return new ArrayList<Photo>();
+        }
+        // Look the range up in the user's date index.
+        return thisUser.getPhotos(thisUser.getDateIndex().between(start.getTimeInMillis(), finish.getTimeInMillis()));
+    }
 
-        // Get the photos that have the given tags.
-        String tagName1 = tag1.name;
-        String tagName2 = tag2.name;
-        String value1 = tag1.value;
-        String value2 = tag2.value;
-        List<Photo> found1 = searchByTag(user, tag1);
-        List<Photo> found2 = searchByTag(user, tag2);
-        List<Photo> found = new ArrayList<Photo>();
+    /**
+     * Add the tag to a photo in a user's album.
+     * @param user User that has the photo.
+     * @param album Album that has the photo.
+     * @param photo Photo that will get the tag.
+     * @param toAdd Tag to add.
+     * @return DBStatus of the add.
+     */
+    public DBStatus addTag(User user, Album album, Photo photo, Tag toAdd){
 
-        // If one whole list is empty, just return.
-        if (found1.size() == 0 || found2.size() == 0){
-            return found;
+        // Get the db's reference to the user and the album.
+        User thisUser = getUser(user.username);
+        if (thisUser == null){
+            return DBStatus.NO_USER;
         }
-
-        // Find the intersection between the photos found.
-        List<Photo> iterator;
-        List<Photo> compareTo;
-        if (found1.size() > found2.size()){
-            iterator = found1;
-            compareTo = found2;
+        if (isReadOnly(thisUser)){
+            return DBStatus.READ_ONLY;
         }
-        else{
-            iterator = found2;
-            compareTo = found1;
+        Album thisAlbum = getAlbum(thisUser, album);
+        if (thisAlbum == null){
+            return DBStatus.NO_ALBUM;
         }
-        for (Photo p : iterator){
-            if (compareTo.contains(p)){
-                found.add(p);
-            }
+        int index = thisAlbum.getPhotos().indexOf(photo);
+        if (index == -1){
+            return DBStatus.NO_PHOTO;
         }
-        return found;
-    }
 
+        // Attempt to add this tag.
+        if (photo.hasTag(toAdd)){
+            return DBStatus.DUPLICATE_TAG;
+        }
+        boolean attempt = photo.addTag(thisUser.getTagDictionary(), toAdd);
+        if (!attempt){
+            return DBStatus.NOT_MULTIPLE_TAG;
+        }
+        thisUser.tagAdded(photo, toAdd);
+        logTag(Journal.Op.ADD_TAG, thisUser, thisAlbum, index, toAdd);
+        return DBStatus.SUCCESS;
+    }
 
     /**
-     * Find photos that have the either the 2 tags. Done by taking the union of photos that have
-     * the first tag, and photos that have the second tag.
-     * @param user User that has the photos to be searched.
-     * @param tag1 First tag.
-     * @param tag2 Second tag.
-     * @return List of photos that have either tags.
+     * Delete a tag from a photo in a user's album.
+     * @param user User that has the photo.
+     * @param album Album that has the photo.
+     * @param photo Photo that has the tag.
+     * @param toDelete Tag to delete.
+     * @return DBStatus of the delete.
      */
-    public List<Photo> searchByTagDisjunctive(User user, Tag tag1, Tag tag2){
+    public DBStatus deleteTag(User user, Album album, Photo photo, Tag toDelete){
 
-        // Get the photos that have the given tag.
-        String tagName1 = tag1.name;
-        String tagName2 = tag2.name;
-        String value1 = tag1.value;
-        String value2 = tag2.value;
-        List<Photo> found1 = searchByTag(user, tag1);
-        List<Photo> found2 = searchByTag(user, tag2);
-        List<Photo> found = new ArrayList<Photo>();
-
-        // If either list is empty, return the other one.
-        if (found1.size() == 0 && found2.size() == 0){
-            return found;
+        // Get the db's reference to the user and the album.
+        User thisUser = getUser(user.username);
+        if (thisUser == null){
+            return DBStatus.NO_USER;
         }
-        else if (found1.size() == 0){
-            return found2;
+        if (isReadOnly(thisUser)){
+            return DBStatus.READ_ONLY;
         }
-        else if (found2.size() == 0){
-            return found1;
+        Album thisAlbum = getAlbum(thisUser, album);
+        if (thisAlbum == null){
+            return DBStatus.NO_ALBUM;
         }
-        else{
-            // Take the union of the 2 sets, MANUALLY to leave out any duplicates.
-            found1.addAll(found2);
-            found = found1;
-//            List<Photo> iterator;
-//            List<Photo> compareTo;
-//            if (found1.size() > found2.size()){
-//                iterator = found1;
-//                compareTo = found2;
-//            }
-//            else{
-//                iterator = found2;
-//                compareTo = found1;
-//            }
-//            for (Photo p : iterator){
-//                if (!compareTo.contains(p)){
-//                    found.add(p);
-//                }
-//            }
+        int index = thisAlbum.getPhotos().indexOf(photo);
+        if (index == -1){
+            return DBStatus.NO_PHOTO;
         }
-        //System.out.print(found);
-        return found;
-    }
 
+        // Find the tag and delete it.
+        if (!photo.removeTag(toDelete)){
+            return DBStatus.FAILURE;
+        }
+        thisUser.tagRemoved(photo, toDelete);
+        logTag(Journal.Op.DELETE_TAG, thisUser, thisAlbum, index, toDelete);
+        return DBStatus.SUCCESS;
+    }
 
     /**
-     * Search for photos by date range.
-     * @param user User that has the photos.
-     * @param start Starting date.
-     * @param finish Ending date.
-     * @return List of photos found, if any, or null.
+     * Save a new preset tag for a user.
+     * @param user User to save the tag for.
+     * @param tag Tag to save.
+     * @return DBStatus of the add.
      */
-    public List<Photo> searchByDate(User user, Calendar start, Calendar finish){
-        List<Photo> found = new ArrayList<Photo>();
+    public DBStatus addCreatedTag(User user, Tag tag){
         User thisUser = getUser(user.username);
-        List<Album> albums = thisUser.getAlbums();
-        // Error checking.
-        if (albums == null){
-            return found;
+        if (thisUser == null){
+            return DBStatus.NO_USER;
         }
-        else if (albums.isEmpty()){
-            return found;
-        }
-        else{
-            for (Album a : albums){
-                List<Photo> photos = a.getPhotos();
-                // More error checking!
-                if (photos == null){
-                    continue;
-                }
-                else if (photos.isEmpty()){
-                    continue;
-                }
-                else{
-                    // Loop through the photos.
-                    for (Photo p : photos){
-                        if (p.withinDate(start, finish)){
-                            // This photo is within the date!
-                            found.add(p);
-                        }
-                    }
-                }
-            }
+        if (isReadOnly(thisUser)){
+            return DBStatus.READ_ONLY;
         }
+        thisUser.getCreatedTags().add(tag);
+        log(Journal.Op.ADD_CREATED_TAG, thisUser.username, tag.name, tag.value,
+                Boolean.toString(tag.canHaveMultiple()));
+        return DBStatus.SUCCESS;
+    }
 
-        return found;
+    /**
+     * Get a finder for photos whose contents are already in one of a user's albums.
+     * Reads every album of the user and looks up the size of every photo, so it is made
+     * in the background.
+     * @param user User whose photos to compare to.
+     * @return Duplicate finder over the user's photos.
+     */
+    public DuplicateFinder getDuplicateFinder(User user){
+        User thisUser = getUser(user.username);
+        if (thisUser == null){
+            return new DuplicateFinder(Collections.<Photo>emptySet());
+        }
+        return new DuplicateFinder(thisUser.getPhotos());
     }
 
     /**
-     * Add the tag to a photo. We're assuming this already exists in the database,
-     * since there is no way to get this photo witout a proper reference to the album.
-     * @param photo Photo that will get the tag.
-     * @param toAdd Tag to add.
-     * @return
+     * Check that a user's photos are still on the machine. If they're not, they will be
+     * deleted. Only the file system is asked, so no photo is decoded.
+     * @param user User whose photos to check.
+     * @return DBStatus.FAILURE if any photos were missing, DBStatus.SUCCESS elsewise.
      */
-    public DBStatus addTag(Photo photo, Tag toAdd){
+    public DBStatus attemptPhotoLoad(User user){
+        List<Photo> missing = findMissingPhotos(user);
+        if (missing.isEmpty()){
+            return DBStatus.SUCCESS;
+        }
+        deletePhotos(user, missing);
+        return DBStatus.FAILURE;
+    }
 
-        // Attempt to add this tag.
-        if (photo.hasTag(toAdd)){
-            return DBStatus.DUPLICATE_TAG;
+    /**
+     * Find the photos of a user whose files are no longer on the machine.
+     * Each file is only looked at once, and the files are checked in parallel.
+     * @param user User whose photos to check.
+     * @return List of missing photos, which is empty if every photo was found.
+     */
+    public List<Photo> findMissingPhotos(User user){
+        List<Photo> missing = new ArrayList<Photo>();
+        User thisUser = getUser(user.username);
+        if (thisUser == null){
+            return missing;
         }
-        boolean attempt = photo.addTag(toAdd);
-        if (!attempt){
-            return DBStatus.NOT_MULTIPLE_TAG;
+
+        // Gather the paths first, since albums load their photos lazily.
+        List<Photo> photos = thisUser.getPhotos();
+        Set<String> directories = new HashSet<String>();
+        for (Photo p : photos){
+            directories.add(p.getDirectory());
         }
 
-        return DBStatus.SUCCESS;
+        // Then check the files.
+        Set<String> gone = directories.parallelStream()
+                .filter(d -> !isPhotoFile(d))
+                .collect(Collectors.toSet());
+        if (gone.isEmpty()){
+            return missing;
+        }
+        for (Photo p : photos){
+            if (gone.contains(p.getDirectory())){
+                missing.add(p);
+            }
+        }
+        return missing;
     }
 
     /**
-     * Attempt to "fake" load a user. This checks to make sure that their photos
-     * are on the machine. If they're not, they will be deleted.
-     * @param user
+     * Delete the given photos from all of a user's albums.
+     * @param user User that has the photos.
+     * @param toDelete Photos to delete.
+     * @return DBStatus of the delete.
      */
-    public DBStatus attemptPhotoLoad(User user){
+    public DBStatus deletePhotos(User user, Collection<Photo> toDelete){
         User thisUser = getUser(user.username);
-        List<Album> albums = thisUser.getAlbums();
-        int lostPhotos = 0;
-        if (albums == null){
-            return DBStatus.SUCCESS;
+        if (thisUser == null){
+            return DBStatus.NO_USER;
         }
-        else if (albums.isEmpty()){
-            return DBStatus.SUCCESS;
+        if (isReadOnly(thisUser)){
+            return DBStatus.READ_ONLY;
         }
-        else{
-            // Loop through the photos and "load" them.
-            for (Album a: albums){
-                List<Photo> photos = a.getPhotos();
-                if (photos == null){
-                    continue;
-                }
-                else if (photos.isEmpty()){
-                    continue;
+        Set<Photo> deleting = Collections.newSetFromMap(new IdentityHashMap<Photo, Boolean>());
+        deleting.addAll(toDelete);
+        for (Album a : thisUser.getAlbums()){
+            List<Photo> photos = a.getPhotos();
+            List<Photo> kept = new ArrayList<Photo>(photos.size());
+            // Log from the back, so the index of each delete is still right when replayed.
+            for (int i = photos.size() - 1; i >= 0; i--){
+                Photo p = photos.get(i);
+                if (deleting.contains(p)){
+                    log(Journal.Op.DELETE_PHOTO, thisUser.username, a.name, Integer.toString(i));
+                    thisUser.photoRemoved(p);
                 }
-                else{
-                    int i = 0;
-                    while (i < photos.size()){
-                        Photo p = photos.get(i);
-                        try {
-                            p.getImageView();
-                        } catch (FileNotFoundException e) {
-                            // Remove this photo.
-                            photos.remove(p);
-                            a.setPhotos(photos);
-                            lostPhotos++;
-                            continue;
-                        }
-                        catch (ConcurrentModificationException e){
-                            photos.remove(p);
-                            a.setPhotos(photos);
-                            lostPhotos++;
-                            continue;
-                        }
-                        i++;
-                    }
+            }
+            for (Photo p : photos){
+                if (!deleting.contains(p)){
+                    kept.add(p);
                 }
             }
-        }
-        if (lostPhotos > 0){
-            return DBStatus.FAILURE;
+            if (kept.size() != photos.size()){
+                a.setPhotos(kept);
+            }
         }
         return DBStatus.SUCCESS;
+    }
 
+    /**
+     * Check if a photo file is still on the machine, using only its metadata.
+     * @param directory Path of the photo.
+     * @return True if it is a regular file, false elsewise.
+     */
+    private static boolean isPhotoFile(String directory){
+        try {
+            return Files.readAttributes(Paths.get(directory), BasicFileAttributes.class).isRegularFile();
+        } catch (IOException | InvalidPathException e) {
+            return false;
+        }
     }
 
 //    /**
@@ -600,20 +779,44 @@ public class Database implements Serializable{
 //    }
 
     /**
-     * Save this database to a file.
+     * Save this database. Changes are already recorded in the journal as they are made,
+     * so this only asks for the journal to be written in the background. Once the journal
+     * grows large enough, it is folded into a new snapshot instead.
      * @return DBStatus of the function.
      */
     public DBStatus saveCurrentDatabase(){
         //System.out.println("Saving database...");
-        try {
-            writeFile(this);
-        } catch (IOException e) {
-            e.printStackTrace();
-            return DBStatus.FAILURE;
+        if (storeDir == null){
+            return DBStatus.DB_NOT_FOUND;
+        }
+        if (persistence == null){
+            // No journal yet, so start over from a full snapshot.
+            getJournalFile().delete();
+            openJournal();
+            takeSnapshot();
+        }
+        else if (snapshotNeeded || persistence.hasFailed() || journalSeq - snapshotSeq >= compactThreshold){
+            takeSnapshot();
+        }
+        else{
+            persistence.requestFlush();
         }
         return DBStatus.SUCCESS;
     }
 
+    /**
+     * Save this database and wait until everything is written to disk.
+     * Used when the application closes.
+     * @return DBStatus of the function.
+     */
+    public DBStatus flushAndWait(){
+        DBStatus status = saveCurrentDatabase();
+        if (status != DBStatus.SUCCESS){
+            return status;
+        }
+        return persistence.flushAndWait();
+    }
+
     /**
      * Load this database from a file.
      * @return DBStatus of the function.
@@ -640,34 +843,252 @@ public class Database implements Serializable{
             return DBStatus.NEW_DB;
         }
         // If this was successfully read, load the users from the database file.
-        // Make sure that the starting data is there as well.
+        // Then bring it up to date with the journal, and make sure that the starting
+        // data is there as well.
         setUsers(db.users);
+        journalSeq = db.journalSeq;
+        snapshotSeq = db.journalSeq;
+        replayJournal(Journal.read(getJournalFile()));
+        openJournal();
+        persistence.requestRepair(snapshotSeq);
         initStartingData();
+        if (db.migrated){
+            // Save the old file in the new format right away.
+            takeSnapshot();
+        }
         return DBStatus.SUCCESS;
     }
 
     /**
-     * Serializes the contents of the Database into the file in storeFile
-     * @param db Database to save.
-     * @throws IOException
+     * Apply the changes from the journal that are newer than the snapshot.
+     * @param records Records read from the journal file.
      */
-    private static void writeFile(Database db) throws IOException {
-        //System.out.println(db);
-            ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(storeDir));
-            oos.writeObject(db);
+    void replayJournal(List<Journal.Record> records){
+        for (Journal.Record record : records){
+            if (record.seq <= journalSeq){
+                continue;
+            }
+            try {
+                apply(record);
+            } catch (FileNotFoundException | RuntimeException e) {
+                // The change no longer applies, so skip it.
+            }
+            journalSeq = record.seq;
+        }
+    }
+
+    /**
+     * Apply a single change from the journal to this database.
+     * @param record Record of the change.
+     * @throws FileNotFoundException
+     */
+    private void apply(Journal.Record record) throws FileNotFoundException {
+        String[] args = record.args;
+        if (record.op == Journal.Op.ADD_USER){
+            addUser(new User(args[0], args[1]));
+            return;
+        }
+        if (record.op == Journal.Op.DELETE_USER){
+            deleteUser(getUser(args[0]));
+            return;
+        }
+        User user = getUser(args[0]);
+        if (record.op == Journal.Op.ADD_CREATED_TAG){
+            addCreatedTag(user, new Tag(args[1], args[2], Boolean.parseBoolean(args[3])));
+            return;
+        }
+        Album album = user.getAlbumByName(args[1]);
+        switch (record.op){
+            case ADD_ALBUM:
+                addAlbum(user, new Album(args[1]));
+                break;
+            case DELETE_ALBUM:
+                deleteAlbum(user, album);
+                break;
+            case RENAME_ALBUM:
+                renameAlbum(user, album, args[2]);
+                break;
+            case ADD_PHOTO:
+                Photo photo = new Photo(args[2], false);
+                photo.setCaption(args[3]);
+                addPhoto(user, album, photo);
+                break;
+            case LINK_PHOTO:
+                Album from = user.getAlbumByName(args[2]);
+                addPhoto(user, album, from.getPhotos().get(Integer.parseInt(args[3])));
+                break;
+            default:
+                // Everything else works on a photo already in the album.
+                Photo target = album.getPhotos().get(Integer.parseInt(args[2]));
+                if (record.op == Journal.Op.DELETE_PHOTO){
+                    deletePhoto(user, album, target);
+                }
+                else if (record.op == Journal.Op.SET_CAPTION){
+                    setCaption(user, album, target, args[3]);
+                }
+                else if (record.op == Journal.Op.ADD_TAG){
+                    addTag(user, album, target, new Tag(args[3], args[4], Boolean.parseBoolean(args[5])));
+                }
+                else if (record.op == Journal.Op.DELETE_TAG){
+                    deleteTag(user, album, target, new Tag(args[3], args[4]));
+                }
+                break;
+        }
+    }
+
+    /**
+     * Record a change in the journal. Does nothing while there is no journal,
+     * such as while the journal is being replayed.
+     * @param op Kind of change.
+     * @param args Arguments of the change.
+     */
+    private void log(Journal.Op op, String... args){
+        if (journal == null){
+            return;
+        }
+        if (snapshotNeeded){
+            // A change before this one is missing from the journal, so replaying this one
+            // without it could apply it to the wrong data. The snapshot will have it.
+            journalSeq++;
+            return;
+        }
+        try {
+            journal.append(++journalSeq, op, args);
+        } catch (IOException e) {
+            // The change is only in memory now, so keep it with a snapshot instead.
+            e.printStackTrace();
+            snapshotNeeded = true;
+        }
+    }
+
+    /**
+     * Record a newly added photo in the journal, along with its caption and tags.
+     * A photo that is already elsewhere in the user's albums is recorded as a link to it.
+     * @param user User that has the photo.
+     * @param album Album that has the photo.
+     * @param photo Photo that was added.
+     * @param index Index of the photo in the album.
+     */
+    private void logPhoto(User user, Album album, Photo photo, int index){
+        if (journal == null){
+            return;
+        }
+        if (user.getPhotoCount(photo) > 1){
+            String[] link = findLink(user, album, photo, index);
+            if (link != null){
+                log(Journal.Op.LINK_PHOTO, user.username, album.name, link[0], link[1]);
+                return;
+            }
+        }
+        log(Journal.Op.ADD_PHOTO, user.username, album.name, photo.getDirectory(), photo.getCaption());
+        for (Tag tag : photo.getTagsList()){
+            logTag(Journal.Op.ADD_TAG, user, album, index, tag);
+        }
+    }
+
+    /**
+     * Find where else a photo is in a user's albums, so a link to it can be recorded.
+     * In the album the photo was added to, only the places before it count, since the
+     * ones after it are not in the journal yet.
+     * @param user User that has the photo.
+     * @param album Album the photo was added to.
+     * @param photo Photo that was added.
+     * @param index Index of the photo in the album.
+     * @return Name of the album and index of the photo in it, or null if there is none.
+     */
+    private static String[] findLink(User user, Album album, Photo photo, int index){
+        for (Album a : user.getAlbums()){
+            List<Photo> photos = a == album ? a.getPhotos().subList(0, index) : a.getPhotos();
+            int found = photos.indexOf(photo);
+            if (found != -1){
+                return new String[] {a.name, Integer.toString(found)};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Record a tag change in the journal.
+     * @param op ADD_TAG or DELETE_TAG.
+     * @param user User that has the photo.
+     * @param album Album that has the photo.
+     * @param index Index of the photo in the album.
+     * @param tag Tag that was added or deleted.
+     */
+    private void logTag(Journal.Op op, User user, Album album, int index, Tag tag){
+        log(op, user.username, album.name, Integer.toString(index), tag.name, tag.value,
+                Boolean.toString(tag.canHaveMultiple()));
+    }
+
+    /**
+     * Have the thumbnail of a photo stored, if it is not already.
+     * @param photo Photo that was added.
+     */
+    private void generateThumbnail(Photo photo){
+        if (thumbnails != null){
+            thumbnails.generateLater(photo.getDirectory());
+        }
+    }
+
+    /**
+     * Start the journal and the background writer for it.
+     */
+    private void openJournal(){
+        journal = new Journal(getJournalFile());
+        persistence = new PersistenceService(storeDir, journal);
+    }
+
+    /**
+     * Take a snapshot of this database and have it written in the background.
+     * Encoding only touches memory, so the snapshot is consistent even if the
+     * database changes again before it reaches the disk.
+     */
+    private void takeSnapshot(){
+        persistence.requestSnapshot(serialize(this), journalSeq);
+        snapshotSeq = journalSeq;
+        snapshotNeeded = false;
+    }
+
+    /**
+     * Get the journal file, which sits next to the storeFile.
+     * @return Journal file.
+     */
+    private static File getJournalFile(){
+        return new File(storeDir.getParentFile(), journalFile);
+    }
+
+    /**
+     * Encode the contents of a Database in the binary storage format.
+     * @param db Database to encode.
+     * @return Encoded bytes.
+     */
+    private static byte[] serialize(Database db){
+        return DatabaseWriter.write(db.users, db.journalSeq);
     }
 
     /**
      * Read and reconstruct the file in storeFile to get its Database contents.
+     * The file is read into memory whole, and only the directory of users is decoded
+     * here; each user's albums are decoded when that user is first used. The file is
+     * not kept open or mapped, so snapshots can replace it on every platform.
+     * Files saved with Java serialization by older versions are migrated.
      * @return Database found.
      * @throws IOException
      * @throws ClassNotFoundException
      */
     private static Database readFile() throws IOException, ClassNotFoundException {
 
-        ObjectInputStream ois = new ObjectInputStream(new FileInputStream(storeDir));
-        Database db = (Database)ois.readObject();
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(storeDir.toPath()));
+        if (!DatabaseReader.isBinary(buffer)){
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            Database db = DatabaseMigrator.readLegacy(bytes);
+            db.migrated = true;
+            return db;
+        }
+        DatabaseReader reader = new DatabaseReader(buffer);
+        reader.read();
+        Database db = new Database(reader.getUsers(), reader.getJournalSeq());
         //System.out.println(db);
         return db;
     }
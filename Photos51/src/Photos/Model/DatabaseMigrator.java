@@ -0,0 +1,38 @@
+package Photos.Model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+/**
+ * Reads database files saved by older versions of the application, which used Java
+ * serialization. The Database saves them back in the binary format right after, so
+ * this only ever runs once per file.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class DatabaseMigrator {
+
+    /**
+     * Read a database saved with Java serialization.
+     * @param bytes Contents of the old database file.
+     * @return Database found.
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    public static Database readLegacy(byte[] bytes) throws IOException, ClassNotFoundException {
+        Database db;
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))){
+            db = (Database) ois.readObject();
+        }
+        // Photos kept their own Tag objects back then, so move them into each user's dictionary.
+        for (User user : db.getUsers()){
+            for (Album album : user.getAlbums()){
+                for (Photo photo : album.getPhotos()){
+                    photo.migrateTags(user.getTagDictionary());
+                }
+            }
+        }
+        return db;
+    }
+}
@@ -0,0 +1,434 @@
+package Photos.Model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+/**
+ * Reads a Database written by DatabaseWriter.
+ * Only the directory of users is read up front. Each user's segment is read when the
+ * user is first used, and each album's photos when the album is first opened. A photo
+ * shared by several albums is only read once, and all of them get the same Photo.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class DatabaseReader {
+
+    private final ByteBuffer buffer;
+    private String[] strings;
+    private TagDictionary dictionary;
+    private long journalSeq;
+    private ArrayList<User> users;
+
+    /**
+     * Constructor.
+     * @param buffer Bytes of the database file.
+     */
+    public DatabaseReader(ByteBuffer buffer){
+        this.buffer = buffer;
+    }
+
+    /**
+     * Constructor for reading part of a segment, sharing the segment's string table.
+     * @param buffer Bytes of the segment, positioned where reading starts.
+     * @param strings String table of the segment.
+     * @param dictionary Tag dictionary of the user the segment belongs to.
+     */
+    private DatabaseReader(ByteBuffer buffer, String[] strings, TagDictionary dictionary){
+        this.buffer = buffer;
+        this.strings = strings;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Check if the given bytes start like a database written by DatabaseWriter.
+     * Does not move the buffer.
+     * @param bytes Database file.
+     * @return True if it is in the binary format, false elsewise.
+     */
+    public static boolean isBinary(ByteBuffer bytes){
+        if (bytes.remaining() < DatabaseWriter.magic.length){
+            return false;
+        }
+        for (int i = 0; i < DatabaseWriter.magic.length; i++){
+            if (bytes.get(bytes.position() + i) != DatabaseWriter.magic[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the directory of users. Their albums are left in the file until needed.
+     * @throws IOException If the data is not a database, is in a version of the format
+     * this application does not read, or is cut short.
+     */
+    public void read() throws IOException {
+        try {
+            if (!isBinary(buffer)){
+                throw new IOException("Not a photos database");
+            }
+            buffer.position(buffer.position() + DatabaseWriter.magic.length);
+            int version = readInt();
+            if (version != DatabaseWriter.version){
+                throw new IOException("Database version " + version + " is not supported");
+            }
+            journalSeq = readLong();
+            int numUsers = readCount();
+            users = new ArrayList<User>(numUsers);
+            int[] numAlbums = new int[numUsers];
+            long[] offsets = new long[numUsers];
+            int[] lengths = new int[numUsers];
+            for (int i = 0; i < numUsers; i++){
+                users.add(new User(readInlineString(), readInlineString()));
+                numAlbums[i] = readInt();
+                offsets[i] = readLong();
+                lengths[i] = readInt();
+            }
+            // Segment offsets start right after the directory.
+            int segmentsStart = buffer.position();
+            for (int i = 0; i < numUsers; i++){
+                ByteBuffer segment = buffer.duplicate();
+                segment.position(Math.toIntExact(segmentsStart + offsets[i]));
+                segment.limit(segment.position() + lengths[i]);
+                users.get(i).setSegment(new UserSegment(segment.slice(), numAlbums[i]));
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException | ArithmeticException e) {
+            throw new IOException("Database file is corrupt", e);
+        }
+    }
+
+    /**
+     * Get the users that were read.
+     * @return List of users.
+     */
+    public ArrayList<User> getUsers(){
+        return users;
+    }
+
+    /**
+     * Get the sequence number of the last change included in the file.
+     * @return Journal sequence number.
+     */
+    public long getJournalSeq(){
+        return journalSeq;
+    }
+
+    /**
+     * The part of the file that holds a user's preset tags and albums, left unread until
+     * the user is first used. If any of it turns out to be corrupt, it is marked as
+     * damaged, and saved again as it is instead of from what could be read.
+     */
+    static class UserSegment {
+        private final ByteBuffer buffer;
+        private final int numAlbums;
+        private volatile boolean damaged;
+
+        private UserSegment(ByteBuffer buffer, int numAlbums){
+            this.buffer = buffer;
+            this.numAlbums = numAlbums;
+        }
+
+        /**
+         * Check if part of the segment could not be read.
+         * @return True if it is damaged, false elsewise.
+         */
+        boolean isDamaged(){
+            return damaged;
+        }
+
+        /**
+         * Get the number of albums in the segment without reading them.
+         * @return Number of albums.
+         */
+        int getNumAlbums(){
+            return numAlbums;
+        }
+
+        /**
+         * Copy the bytes of the segment, so it can be saved again without reading it.
+         * @return Bytes of the segment.
+         */
+        byte[] getBytes(){
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            return bytes;
+        }
+
+        /**
+         * Read the segment into the user: their preset tags and album headers.
+         * The photos of each album are only read when the album is opened.
+         * @param user User to load into.
+         * @throws IOException If the segment is corrupt or cut short, in which case it is
+         * marked as damaged.
+         */
+        void load(User user) throws IOException {
+            try {
+                loadUser(user);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException e) {
+                damaged = true;
+                throw new IOException("User data is corrupt", e);
+            }
+        }
+
+        /**
+         * Read the segment into the user, throwing whatever the buffer throws if the
+         * segment is corrupt.
+         * @param user User to load into.
+         */
+        private void loadUser(User user){
+            DatabaseReader reader = new DatabaseReader(buffer.duplicate(), null, user.getTagDictionary());
+            reader.readStringTable();
+            user.setCreatedTags(reader.readTags());
+            user.setNextPhotoId(reader.readLong());
+            PhotoTable table = reader.readPhotoTable();
+            int numAlbums = reader.readCount();
+            ArrayList<Album> albums = new ArrayList<Album>(numAlbums);
+            int[] numPhotos = new int[numAlbums];
+            int[] offsets = new int[numAlbums];
+            String[] dates = new String[numAlbums];
+            for (int i = 0; i < numAlbums; i++){
+                Album album = new Album(reader.readString());
+                album.setCreationDate(toCalendar(reader.readLong()));
+                dates[i] = reader.readString();
+                numPhotos[i] = reader.readCount();
+                offsets[i] = reader.readInt();
+                reader.readInt(); // Length of the block, not needed to read it.
+                albums.add(album);
+            }
+            // Block offsets start right after the album headers.
+            int blocksStart = reader.buffer.position();
+            for (int i = 0; i < numAlbums; i++){
+                ByteBuffer block = reader.buffer.duplicate();
+                block.position(blocksStart + offsets[i]);
+                albums.get(i).setPhotoBlock(new PhotoBlock(this, block, reader, table, numPhotos[i]), dates[i]);
+            }
+            user.setAlbums(albums);
+        }
+    }
+
+    /**
+     * The table of a user's photos in a segment. Each photo is read the first time an
+     * album that has it is opened, and then handed to every other album that has it.
+     */
+    private static class PhotoTable {
+        private final ByteBuffer buffer;
+        private final DatabaseReader segment;
+        private final int[] offsets;
+        private final Photo[] photos;
+
+        private PhotoTable(ByteBuffer buffer, DatabaseReader segment, int[] offsets){
+            this.buffer = buffer;
+            this.segment = segment;
+            this.offsets = offsets;
+            this.photos = new Photo[offsets.length];
+        }
+
+        /**
+         * Get a photo by its index in the table, reading it if needed.
+         * @param index Index of the photo.
+         * @return Photo at that index.
+         */
+        Photo get(int index){
+            if (photos[index] == null){
+                ByteBuffer record = buffer.duplicate();
+                record.position(record.position() + offsets[index]);
+                photos[index] = segment.at(record).readPhoto();
+            }
+            return photos[index];
+        }
+    }
+
+    /**
+     * The part of a segment that holds an album's photos, left unread until the album
+     * is first opened.
+     */
+    static class PhotoBlock {
+        private final UserSegment owner;
+        private final ByteBuffer buffer;
+        private final DatabaseReader segment;
+        private final PhotoTable table;
+        private final int numPhotos;
+
+        private PhotoBlock(UserSegment owner, ByteBuffer buffer, DatabaseReader segment, PhotoTable table, int numPhotos){
+            this.owner = owner;
+            this.buffer = buffer;
+            this.segment = segment;
+            this.table = table;
+            this.numPhotos = numPhotos;
+        }
+
+        /**
+         * Get the number of photos in the block without reading them.
+         * @return Number of photos.
+         */
+        int getNumPhotos(){
+            return numPhotos;
+        }
+
+        /**
+         * Read the photos of the block.
+         * @return List of photos.
+         * @throws IOException If the block is corrupt or cut short, in which case the
+         * segment it is in is marked as damaged.
+         */
+        List<Photo> read() throws IOException {
+            try {
+                DatabaseReader reader = segment.at(buffer.duplicate());
+                List<Photo> photos = new ArrayList<Photo>(numPhotos);
+                for (int i = 0; i < numPhotos; i++){
+                    photos.add(table.get(reader.readInt()));
+                }
+                return photos;
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException e) {
+                owner.damaged = true;
+                throw new IOException("Album data is corrupt", e);
+            }
+        }
+    }
+
+    /**
+     * Make a reader for another part of the same segment, sharing its string table.
+     * @param part Bytes to read, positioned where reading starts.
+     * @return Reader.
+     */
+    private DatabaseReader at(ByteBuffer part){
+        return new DatabaseReader(part, strings, dictionary);
+    }
+
+    /**
+     * Read the string table at the start of a segment.
+     */
+    private void readStringTable(){
+        strings = new String[readCount()];
+        for (int i = 0; i < strings.length; i++){
+            strings[i] = readInlineString();
+        }
+    }
+
+    /**
+     * Read the table of a user's photos, leaving the photos themselves unread.
+     * @return Photo table.
+     */
+    private PhotoTable readPhotoTable(){
+        int[] offsets = new int[readCount()];
+        int offset = 0;
+        for (int i = 0; i < offsets.length; i++){
+            offsets[i] = offset;
+            offset += readInt();
+        }
+        PhotoTable table = new PhotoTable(buffer.duplicate(), this, offsets);
+        buffer.position(buffer.position() + offset);
+        return table;
+    }
+
+    /**
+     * Read a photo.
+     * @return Photo read.
+     */
+    private Photo readPhoto(){
+        long id = readLong();
+        String folder = readString();
+        String name = readString();
+        String directory = folder.isEmpty() ? name : folder + java.io.File.separator + name;
+        String caption = readString();
+        GregorianCalendar dateModified = toCalendar(readLong());
+        Photo photo = new Photo(directory, caption, dateModified, dictionary, readTags());
+        photo.setId(id);
+        return photo;
+    }
+
+    /**
+     * Read a list of tags, starting with how many there are.
+     * @return List of tags read.
+     */
+    private List<Tag> readTags(){
+        int numTags = readCount();
+        List<Tag> tags = new ArrayList<Tag>(numTags);
+        for (int i = 0; i < numTags; i++){
+            String name = readString();
+            String value = readString();
+            int flags = readInt();
+            tags.add(new Tag(name, value, (flags & DatabaseWriter.tagMultiple) != 0));
+        }
+        return tags;
+    }
+
+    /**
+     * Read a string by its index in the string table.
+     * @return String read.
+     */
+    private String readString(){
+        return strings[readInt()];
+    }
+
+    /**
+     * Read a string written by DatabaseWriter.writeInlineString.
+     * @return String read.
+     */
+    private String readInlineString(){
+        byte[] bytes = new byte[readCount()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the number of things that follow, each of which takes at least one byte.
+     * A corrupt count is caught here, before anything is made that big.
+     * @return Count read.
+     */
+    private int readCount(){
+        int count = readInt();
+        if (count < 0 || count > buffer.remaining()){
+            throw new BufferUnderflowException();
+        }
+        return count;
+    }
+
+    /**
+     * Read a varint written by DatabaseWriter.writeInt.
+     * @return Value read.
+     */
+    private int readInt(){
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Read a zigzag varint written by DatabaseWriter.writeLong.
+     * @return Value read.
+     */
+    private long readLong(){
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * Convert epoch millis to a calendar.
+     * @param millis Epoch millis.
+     * @return Calendar at that time.
+     */
+    private static GregorianCalendar toCalendar(long millis){
+        GregorianCalendar calendar = new GregorianCalendar();
+        calendar.setTimeInMillis(millis);
+        return calendar;
+    }
+}
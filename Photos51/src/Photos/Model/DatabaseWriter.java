@@ -0,0 +1,241 @@
+package Photos.Model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Writes the Database in the compact binary storage format.
+ * The file starts with a magic number, the format version and a directory of the users,
+ * holding each user's name, password, number of albums and where their segment is.
+ * Each user's albums, photos and tags are in their own segment, so the Database can map
+ * the file and only read the segment of the user that logs in.
+ * A segment starts with a table of every distinct string in it (tag names and values,
+ * captions, photo folders and file names), followed by the preset tags, the next photo ID,
+ * a table of the user's photos, a header for each album, and then one block per album
+ * listing its photos by their index in the photo table. A photo in several albums is only
+ * written once, along with its ID.
+ * Everything after the string table refers to strings by their index in the table, numbers
+ * are written as varints, and dates as epoch millis.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class DatabaseWriter {
+
+    static final byte[] magic = {'P', 'H', 'D', 'B'};
+    static final int version = 1;
+    static final int tagMultiple = 1;
+
+    private final HashMap<String, Integer> stringIndex = new HashMap<String, Integer>();
+    private final List<String> strings = new ArrayList<String>();
+
+    /**
+     * Encode the users of a database. Users whose segment was never loaded, or could not
+     * all be read, are copied over as they are.
+     * @param users Users to write.
+     * @param journalSeq Sequence number of the last change the users include.
+     * @return Encoded database.
+     */
+    public static byte[] write(List<User> users, long journalSeq){
+        List<byte[]> segments = new ArrayList<byte[]>(users.size());
+        int[] numAlbums = new int[users.size()];
+        for (int i = 0; i < users.size(); i++){
+            User user = users.get(i);
+            DatabaseReader.UserSegment segment = user.getSegment();
+            if (segment != null){
+                segments.add(segment.getBytes());
+                numAlbums[i] = segment.getNumAlbums();
+            }
+            else{
+                segments.add(new DatabaseWriter().encodeUser(user));
+                numAlbums[i] = user.getNumAlbums();
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(magic, 0, magic.length);
+        writeInt(out, version);
+        writeLong(out, journalSeq);
+        writeInt(out, users.size());
+        // Segment offsets start right after the directory.
+        long offset = 0;
+        for (int i = 0; i < users.size(); i++){
+            User user = users.get(i);
+            writeInlineString(out, user.username);
+            writeInlineString(out, user.getPassword());
+            writeInt(out, numAlbums[i]);
+            writeLong(out, offset);
+            writeInt(out, segments.get(i).length);
+            offset += segments.get(i).length;
+        }
+        for (byte[] segment : segments){
+            out.write(segment, 0, segment.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encode the segment of a user: the string table, preset tags, photo table, album
+     * headers and the photo blocks.
+     * @param user User to write.
+     * @return Encoded segment.
+     */
+    private byte[] encodeUser(User user){
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        List<Tag> createdTags = user.getCreatedTags();
+        writeInt(body, createdTags.size());
+        for (Tag tag : createdTags){
+            writeTag(body, tag);
+        }
+
+        // Make sure every photo has an ID before the next one is written.
+        user.getPhotoIds();
+        writeLong(body, user.getNextPhotoId());
+
+        // Number each photo the first time an album has it, and write it once.
+        List<Album> albums = user.getAlbums();
+        IdentityHashMap<Photo, Integer> photoIndex = new IdentityHashMap<Photo, Integer>();
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        List<Integer> lengths = new ArrayList<Integer>();
+        for (Album album : albums){
+            for (Photo photo : album.getPhotos()){
+                if (!photoIndex.containsKey(photo)){
+                    photoIndex.put(photo, photoIndex.size());
+                    int start = table.size();
+                    writePhoto(table, photo);
+                    lengths.add(table.size() - start);
+                }
+            }
+        }
+        // The length of each photo is written first, so a photo can be read on its own.
+        writeInt(body, lengths.size());
+        for (int length : lengths){
+            writeInt(body, length);
+        }
+        writeBytes(body, table.toByteArray());
+
+        // Photo block offsets start right after the album headers.
+        ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+        writeInt(body, albums.size());
+        for (Album album : albums){
+            List<Photo> photos = album.getPhotos();
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            for (Photo photo : photos){
+                writeInt(block, photoIndex.get(photo));
+            }
+            writeString(body, album.name);
+            writeLong(body, album.getCreationDate().getTimeInMillis());
+            writeString(body, album.getDateModified());
+            writeInt(body, photos.size());
+            writeInt(body, blocks.size());
+            writeInt(body, block.size());
+            writeBytes(blocks, block.toByteArray());
+        }
+        writeBytes(body, blocks.toByteArray());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.size() + 1024);
+        writeInt(out, strings.size());
+        for (String s : strings){
+            writeInlineString(out, s);
+        }
+        writeBytes(out, body.toByteArray());
+        return out.toByteArray();
+    }
+
+    /**
+     * Write a photo. The path is split into its folder and file name, since the
+     * folders repeat across a lot of photos.
+     * @param out Stream to write to.
+     * @param photo Photo to write.
+     */
+    private void writePhoto(ByteArrayOutputStream out, Photo photo){
+        File file = new File(photo.getDirectory());
+        writeLong(out, photo.getId());
+        writeString(out, file.getParent() == null ? "" : file.getParent());
+        writeString(out, file.getName());
+        writeString(out, photo.getCaption());
+        writeLong(out, photo.dateModified.getTimeInMillis());
+        List<Tag> tags = photo.getTagsList();
+        writeInt(out, tags.size());
+        for (Tag tag : tags){
+            writeTag(out, tag);
+        }
+    }
+
+    /**
+     * Write a tag.
+     * @param out Stream to write to.
+     * @param tag Tag to write.
+     */
+    private void writeTag(ByteArrayOutputStream out, Tag tag){
+        writeString(out, tag.name);
+        writeString(out, tag.value);
+        writeInt(out, tag.canHaveMultiple() ? tagMultiple : 0);
+    }
+
+    /**
+     * Write a string as its index in the string table, adding it to the table if needed.
+     * @param out Stream to write to.
+     * @param s String to write.
+     */
+    private void writeString(ByteArrayOutputStream out, String s){
+        Integer index = stringIndex.get(s);
+        if (index == null){
+            index = strings.size();
+            strings.add(s);
+            stringIndex.put(s, index);
+        }
+        writeInt(out, index);
+    }
+
+    /**
+     * Write a string as its UTF-8 length followed by its bytes.
+     * @param out Stream to write to.
+     * @param s String to write.
+     */
+    static void writeInlineString(ByteArrayOutputStream out, String s){
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeInt(out, bytes.length);
+        writeBytes(out, bytes);
+    }
+
+    /**
+     * Write all the given bytes.
+     * @param out Stream to write to.
+     * @param bytes Bytes to write.
+     */
+    private static void writeBytes(ByteArrayOutputStream out, byte[] bytes){
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Write a non-negative int as a varint: 7 bits per byte, high bit set on all but the last.
+     * @param out Stream to write to.
+     * @param value Value to write.
+     */
+    static void writeInt(ByteArrayOutputStream out, int value){
+        while ((value & ~0x7F) != 0){
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Write a long as a zigzag varint, so small negative values stay small too.
+     * @param out Stream to write to.
+     * @param value Value to write.
+     */
+    static void writeLong(ByteArrayOutputStream out, long value){
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0){
+            out.write((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.write((int) zigzag);
+    }
+}
@@ -0,0 +1,110 @@
+package Photos.Model;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Index of a user's photos sorted by the time they were last modified, so a date search
+ * is two binary searches instead of a look at every photo.
+ * The times are kept in a plain array of epoch millis next to an array of the photo IDs.
+ * Like the TagIndex, photos come and go as the user's PhotoStore says, so a photo shared
+ * by two albums is only listed once.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+class DateIndex {
+
+    private long[] times;
+    private long[] ids;
+    private int size;
+
+    /**
+     * Constructor for an index of the given photos. They are sorted once, instead of
+     * being added one at a time, which would move the later photos along for each one.
+     * @param photos Photos in the user's library.
+     */
+    DateIndex(List<Photo> photos){
+        Photo[] sorted = photos.toArray(new Photo[0]);
+        // The sort is stable, so photos with the same time keep their order, like addPhoto.
+        Arrays.sort(sorted, Comparator.comparingLong(photo -> photo.dateModified.getTimeInMillis()));
+        size = sorted.length;
+        times = new long[Math.max(16, size)];
+        ids = new long[times.length];
+        for (int i = 0; i < size; i++){
+            times[i] = sorted[i].dateModified.getTimeInMillis();
+            ids[i] = sorted[i].getId();
+        }
+    }
+
+    /**
+     * Get the photos modified strictly between the given times, like Photo.withinDate.
+     * @param start Start time, in epoch millis.
+     * @param end End time, in epoch millis.
+     * @return IDs of the photos found, oldest first.
+     */
+    long[] between(long start, long end){
+        if (end == Long.MIN_VALUE){
+            return PhotoIds.none;
+        }
+        int from = firstAfter(start);
+        int to = Math.max(from, firstAfter(end - 1));
+        return Arrays.copyOfRange(ids, from, to);
+    }
+
+    /**
+     * Index a photo that was just added to the user's library.
+     * @param photo Photo that was added.
+     */
+    void addPhoto(Photo photo){
+        if (size == times.length){
+            times = Arrays.copyOf(times, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        // Photos with the same time keep the order they were added in.
+        long time = photo.dateModified.getTimeInMillis();
+        int i = firstAfter(time);
+        System.arraycopy(times, i, times, i + 1, size - i);
+        System.arraycopy(ids, i, ids, i + 1, size - i);
+        times[i] = time;
+        ids[i] = photo.getId();
+        size++;
+    }
+
+    /**
+     * Drop a photo that is no longer in the user's library.
+     * @param photo Photo that was removed.
+     */
+    void removePhoto(Photo photo){
+        // Find the photo among the ones with the same time.
+        long time = photo.dateModified.getTimeInMillis();
+        for (int i = firstAfter(time - 1); i < size && times[i] == time; i++){
+            if (ids[i] == photo.getId()){
+                System.arraycopy(times, i + 1, times, i, size - i - 1);
+                System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+                size--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Find the first position whose time is after the given time.
+     * @param time Time, in epoch millis.
+     * @return Position, which is size if there is none.
+     */
+    private int firstAfter(long time){
+        int low = 0;
+        int high = size;
+        while (low < high){
+            int mid = (low + high) >>> 1;
+            if (times[mid] <= time){
+                low = mid + 1;
+            }
+            else{
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
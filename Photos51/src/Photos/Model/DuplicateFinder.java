@@ -0,0 +1,141 @@
+package Photos.Model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Finds photos with the same contents as a photo that is about to be added.
+ * Photos are first grouped by file size, so a file is only fingerprinted when another
+ * photo has the exact same size. Safe to use from several threads, such as the
+ * workers of an import.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class DuplicateFinder {
+
+    /**
+     * Photos by file size. Photos of different sizes can never match, so each list is
+     * locked on its own, and photos of other sizes are checked at the same time.
+     */
+    private final HashMap<Long, List<Photo>> bySize;
+
+    /**
+     * Constructor for a finder over the given photos.
+     * @param photos Photos that new photos are compared to.
+     */
+    DuplicateFinder(Collection<Photo> photos){
+        bySize = new HashMap<Long, List<Photo>>();
+        for (Photo photo : photos){
+            add(photo);
+        }
+    }
+
+    /**
+     * Find a photo with the same contents as the given one.
+     * @param photo Photo in question.
+     * @return Photo with the same contents, or null if there is none.
+     */
+    public Photo find(Photo photo){
+        List<Photo> sameSize;
+        synchronized (this){
+            sameSize = bySize.get(photo.getSize());
+        }
+        if (sameSize == null){
+            return null;
+        }
+        synchronized (sameSize){
+            return match(sameSize, photo);
+        }
+    }
+
+    /**
+     * Find a photo with the same contents as the given one, and if there is none,
+     * include the given one in the ones new photos are compared to. Both happen as
+     * one step, so when the same file shows up twice at once only one of them is new.
+     * @param photo Photo in question.
+     * @return Photo with the same contents, or null if there was none and it was added.
+     */
+    public Photo findOrAdd(Photo photo){
+        List<Photo> sameSize = sameSize(photo);
+        if (sameSize == null){
+            return null;
+        }
+        synchronized (sameSize){
+            Photo existing = match(sameSize, photo);
+            if (existing == null){
+                sameSize.add(photo);
+            }
+            return existing;
+        }
+    }
+
+    /**
+     * Include a photo in the ones new photos are compared to.
+     * @param photo Photo to add.
+     */
+    public void add(Photo photo){
+        List<Photo> sameSize = sameSize(photo);
+        if (sameSize == null){
+            return;
+        }
+        synchronized (sameSize){
+            sameSize.add(photo);
+        }
+    }
+
+    /**
+     * Get the photos of the same size as the given one, making the list if needed.
+     * @param photo Photo in question.
+     * @return Photos of the same size, or null for empty files, which are never compared.
+     */
+    private synchronized List<Photo> sameSize(Photo photo){
+        long size = photo.getSize();
+        if (size == 0){
+            return null;
+        }
+        List<Photo> sameSize = bySize.get(size);
+        if (sameSize == null){
+            sameSize = new ArrayList<Photo>(1);
+            bySize.put(size, sameSize);
+        }
+        return sameSize;
+    }
+
+    /**
+     * Compare a photo to the others of its size. Must hold the lock of the list.
+     * @param sameSize Photos of the same size.
+     * @param photo Photo in question.
+     * @return Photo with the same contents, or null if there is none.
+     */
+    private static Photo match(List<Photo> sameSize, Photo photo){
+        if (sameSize.isEmpty()){
+            return null;
+        }
+        // The same file is always a duplicate, so only hash when the paths differ.
+        for (Photo candidate : sameSize){
+            if (candidate.getDirectory().equals(photo.getDirectory())){
+                return candidate;
+            }
+        }
+        String hash;
+        try {
+            hash = Fingerprint.of(new File(photo.getDirectory()));
+        } catch (IOException e) {
+            return null;
+        }
+        for (Photo candidate : sameSize){
+            try {
+                if (Fingerprint.of(new File(candidate.getDirectory())).equals(hash)){
+                    return candidate;
+                }
+            } catch (IOException e) {
+                // This one is gone, so it cannot be a duplicate.
+            }
+        }
+        return null;
+    }
+}
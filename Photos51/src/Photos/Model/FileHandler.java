@@ -2,23 +2,54 @@ package Photos.Model;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
 
 /**
  * Loads and finds files.
+ * Files are found through an index of every file name under the search root, built in
+ * a single walk the first time a file is asked for. As files under the root are created
+ * and deleted, only their entries in the index are changed, so the application saving
+ * its own files does not throw the index away.
  * @author Krysti Leong
  * @author April Dizon
  */
 public class FileHandler {
 
+    private static final Path root = Paths.get(".."); // Go up to the Photos package.
+
+    private static HashMap<String, File> index;
+
+    /**
+     * Names that more than one file under the root has. Deleting the file the index
+     * has for one of these means the index has to be built again to find the other.
+     */
+    private static HashSet<String> shared;
+    private static WatchService watcher;
+    private static boolean watching;
+
     /**
-     * Find a file with the given file name.
+     * Find a file with the given file name. Names are compared ignoring case.
      * @param fileName File name.
      * @return File, if found.
      */
-    public static File findPath(String fileName){
-        File file = new File(".."); // Go up to the Photos package.
+    public static synchronized File findPath(String fileName){
         //System.out.println("Trying to find:" + fileName);
-        return find(fileName, file);
+        String key = fileName.toLowerCase(Locale.ROOT);
+        if (index == null){
+            buildIndex();
+        }
+        File found = index.get(key);
+        if (found == null && !watching){
+            // Without a watcher the index may be out of date, so look again.
+            buildIndex();
+            found = index.get(key);
+        }
+        return found;
     }
 
 //    public static String convertToAbsolute(File path){
@@ -35,26 +66,159 @@ public class FileHandler {
 //    }
 
     /**
-     * Utility to recurse through directories to find the file.
-     * @param fileName File name of the file.
-     * @param currentDirectory Current directory the search is in.
-     * @return File found, if any.
+     * Walk the directories under the root once, indexing every file by its name.
+     * If two files have the same name, the first one found is kept. Hidden directories
+     * (such as .git) are skipped. Each directory is also watched for changes.
+     */
+    private static void buildIndex(){
+        index = new HashMap<String, File>();
+        shared = new HashSet<String>();
+        startWatcher();
+        indexTree(root);
+    }
+
+    /**
+     * Add every file under a directory to the index, and watch each directory in it.
+     * @param start Directory to walk.
      */
-    private static File find(String fileName, File currentDirectory){
-        if (currentDirectory.isDirectory()){
-            File[] list = currentDirectory.listFiles();
-            for (File f : list){
-                File found = find(fileName, f);
-                if (found != null){
-                    return found;
+    private static void indexTree(Path start){
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<Path>(){
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs){
+                    Path name = dir.getFileName();
+                    if (!dir.equals(root) && name != null && name.toString().startsWith(".")){
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    watch(dir);
+                    return FileVisitResult.CONTINUE;
                 }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs){
+                    add(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e){
+                    // Skip anything that cannot be read.
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            // Keep whatever was found.
+        }
+    }
+
+    /**
+     * Add a file to the index, unless another file with the same name is already in it.
+     * @param file File to add.
+     */
+    private static void add(Path file){
+        String key = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        File existing = index.putIfAbsent(key, file.toFile());
+        if (existing != null && !existing.toPath().equals(file)){
+            shared.add(key);
+        }
+    }
+
+    /**
+     * Remove a deleted file from the index, or every file under it if it was a directory.
+     * @param deleted Path that was deleted.
+     */
+    private static void remove(Path deleted){
+        String key = deleted.getFileName().toString().toLowerCase(Locale.ROOT);
+        File found = index.get(key);
+        if (found != null && found.toPath().equals(deleted)){
+            if (shared.contains(key)){
+                // Another file has this name, and only a new walk can tell where.
+                index = null;
+                return;
+            }
+            index.remove(key);
+            return;
+        }
+        // It may have been a directory, so drop what was under it.
+        Iterator<File> files = index.values().iterator();
+        while (files.hasNext()){
+            if (files.next().toPath().startsWith(deleted)){
+                files.remove();
             }
         }
-        else{
-            if (currentDirectory.getName().equalsIgnoreCase(fileName)){
-                return currentDirectory;
+    }
+
+    /**
+     * Start the thread that drops the index when something under the root changes.
+     */
+    private static void startWatcher(){
+        if (watcher != null){
+            return;
+        }
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            return;
+        }
+        watching = true;
+        Thread thread = new Thread(FileHandler::watchLoop, "file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Watch a directory for files being created, deleted or renamed.
+     * @param dir Directory to watch.
+     */
+    private static void watch(Path dir){
+        if (!watching){
+            return;
+        }
+        try {
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException | UnsupportedOperationException e) {
+            // This directory will not be watched, so stop trusting the index on misses.
+            watching = false;
+        }
+    }
+
+    /**
+     * Wait for changes and update the index with them.
+     */
+    private static void watchLoop(){
+        while (true){
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = (Path) key.watchable();
+            synchronized (FileHandler.class){
+                for (WatchEvent<?> event : key.pollEvents()){
+                    if (index == null){
+                        // It is built again on the next request anyway.
+                        continue;
+                    }
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW){
+                        // Some changes were lost, so the index cannot be trusted.
+                        index = null;
+                        continue;
+                    }
+                    Path changed = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE){
+                        remove(changed);
+                    }
+                    else if (Files.isDirectory(changed)){
+                        indexTree(changed);
+                    }
+                    else {
+                        add(changed);
+                    }
+                }
             }
+            key.reset();
         }
-        return null;
     }
 }
@@ -0,0 +1,89 @@
+package Photos.Model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes a fingerprint of the contents of a photo file, so two files with the same
+ * contents can be told apart from two files that only share a size.
+ * The fingerprint is a SHA-256 hash, read through the file in chunks. Fingerprints are
+ * remembered by path, and reused as long as the file keeps the same size and last
+ * modified time. Safe to use from several threads.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class Fingerprint {
+
+    private static final int chunkSize = 64 * 1024;
+
+    /**
+     * A fingerprint, with the version of the file it was computed from.
+     */
+    private static class Entry {
+        final long size;
+        final long lastModified;
+        final String hash;
+
+        Entry(long size, long lastModified, String hash){
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+
+    private static final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * Get the fingerprint of a file.
+     * @param file File to fingerprint.
+     * @return Hex string of the hash of the file contents.
+     * @throws IOException If the file cannot be read.
+     */
+    public static String of(File file) throws IOException {
+        String path = file.getPath();
+        long size = file.length();
+        long lastModified = file.lastModified();
+        Entry entry = cache.get(path);
+        if (entry != null && entry.size == size && entry.lastModified == lastModified){
+            return entry.hash;
+        }
+        String hash = hash(file);
+        cache.put(path, new Entry(size, lastModified, hash));
+        return hash;
+    }
+
+    /**
+     * Hash the contents of a file.
+     * @param file File to hash.
+     * @return Hex string of the hash.
+     * @throws IOException If the file cannot be read.
+     */
+    private static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            while (channel.read(buffer) != -1){
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()){
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,391 @@
+package Photos.Model;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Decodes photos at the size they are shown at, so very large originals never have to be
+ * held in memory at full resolution.
+ * The size of a photo is read from its header first, and the photo is then read with
+ * source subsampling, skipping the rows and columns that would be scaled away anyway.
+ * All decodes share one budget of decoded pixels: a decode waits while others use up the
+ * budget, and a single photo is subsampled further if it would not fit in it by itself.
+ * A decode holds its pixels until the photo has been scaled and copied into its result.
+ * Photos that ImageIO cannot read are left to JavaFX.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public final class ImageDecoder {
+
+    /**
+     * Decoded pixels that may be in memory at once, about 256MB at 4 bytes a pixel.
+     */
+    static final long pixelBudget = 1L << 26;
+
+    private static final Object budgetLock = new Object();
+    private static long pixelsInUse;
+
+    private static final ExecutorService loader = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "image-decoder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ImageDecoder(){
+    }
+
+    /**
+     * Decode a photo to fit in the given size, keeping its ratio. Runs on the calling
+     * thread, so it should not be called on the JavaFX thread.
+     * @param file Photo file.
+     * @param width Largest width, or 0 for no limit.
+     * @param height Largest height, or 0 for no limit.
+     * @return Decoded photo, or null if it could not be read.
+     */
+    public static Image decode(File file, double width, double height){
+        try {
+            int[] size = readSize(file);
+            if (size == null){
+                Image image = new Image(file.toURI().toString(), width, height, true, true, false);
+                return image.isError() ? null : image;
+            }
+            int[] fitted = fit(size[0], size[1], width, height);
+            return read(file, size, fitted, source -> toImage(scale(source, fitted[0], fitted[1])));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get an image of a photo that fits in the given size, keeping its ratio, and decode
+     * the photo into it in the background. The image stays blank until it is done, like a
+     * JavaFX image that loads in the background. Only the header of the photo is read on
+     * the calling thread.
+     * @param file Photo file.
+     * @param width Largest width, or 0 for no limit.
+     * @param height Largest height, or 0 for no limit.
+     * @return Image that fills in once the photo is decoded.
+     */
+    public static Image decodeLater(File file, double width, double height){
+        int[] size;
+        try {
+            size = readSize(file);
+        } catch (IOException e) {
+            size = null;
+        }
+        if (size == null){
+            return new Image(file.toURI().toString(), width, height, true, true, true);
+        }
+        int[] fitted = fit(size[0], size[1], width, height);
+        WritableImage image = new WritableImage(fitted[0], fitted[1]);
+        int[] header = size;
+        loader.execute(() -> {
+            int[] pixels;
+            try {
+                pixels = read(file, header, fitted, source -> argb(scale(source, fitted[0], fitted[1])));
+            } catch (IOException | RuntimeException e) {
+                return;
+            }
+            // Images that may be on screen can only be changed on the JavaFX thread.
+            Platform.runLater(() -> image.getPixelWriter().setPixels(0, 0, fitted[0], fitted[1],
+                    PixelFormat.getIntArgbInstance(), pixels, 0, fitted[0]));
+        });
+        return image;
+    }
+
+    /**
+     * Read a photo subsampled so it is at least the given size, or as close to it as the
+     * pixel budget allows, and turn it into the result while its pixels are still held
+     * against the budget. Room is held for one more image the size of the subsampled
+     * photo, such as a copy convert scales it down into.
+     * @param file Photo file.
+     * @param width Smallest width wanted, or 0 for no limit.
+     * @param height Smallest height wanted, or 0 for no limit.
+     * @param convert Turns the subsampled photo into the result.
+     * @return Result of convert, or null if ImageIO cannot read the photo.
+     * @throws IOException
+     */
+    static <T> T read(File file, int width, int height, Function<BufferedImage, T> convert) throws IOException {
+        int[] size = readSize(file);
+        if (size == null){
+            return null;
+        }
+        int step = step(size[0], size[1], width, height);
+        return read(file, step, pixels(size[0], size[1], step) * 2, convert);
+    }
+
+    /**
+     * Decode part of a photo, such as one tile of a zoomed in view. Only the given region
+     * is read, subsampled by the given step.
+     * @param file Photo file.
+     * @param x Left edge of the region in the photo.
+     * @param y Top edge of the region in the photo.
+     * @param width Width of the region in the photo.
+     * @param height Height of the region in the photo.
+     * @param step Subsampling step.
+     * @return Decoded region, or null if ImageIO cannot read the photo.
+     * @throws IOException
+     */
+    static Image decodeRegion(File file, int x, int y, int width, int height, int step) throws IOException {
+        long pixels = pixels(width, height, step) * 2;
+        acquire(pixels);
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)){
+            ImageReader reader = reader(in);
+            if (reader == null){
+                return null;
+            }
+            BufferedImage region;
+            try {
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle(x, y, width, height));
+                param.setSourceSubsampling(step, step, 0, 0);
+                region = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+            return toImage(region);
+        } finally {
+            release(pixels);
+        }
+    }
+
+    /**
+     * Read the width and height of a photo from its header.
+     * @param file Photo file.
+     * @return Width and height, or null if ImageIO cannot read the photo.
+     * @throws IOException
+     */
+    static int[] readSize(File file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)){
+            ImageReader reader = reader(in);
+            if (reader == null){
+                return null;
+            }
+            try {
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Work out the size a photo is shown at when it is fit in the given size.
+     * Photos are never made bigger than they are.
+     * @param width Width of the photo.
+     * @param height Height of the photo.
+     * @param maxWidth Largest width, or 0 for no limit.
+     * @param maxHeight Largest height, or 0 for no limit.
+     * @return Width and height to show the photo at.
+     */
+    static int[] fit(int width, int height, double maxWidth, double maxHeight){
+        double scale = 1;
+        if (maxWidth > 0){
+            scale = Math.min(scale, maxWidth / width);
+        }
+        if (maxHeight > 0){
+            scale = Math.min(scale, maxHeight / height);
+        }
+        return new int[]{
+                Math.max(1, (int) Math.round(width * scale)),
+                Math.max(1, (int) Math.round(height * scale))};
+    }
+
+    /**
+     * Work out the largest subsampling step that still leaves a photo at least the given
+     * size, raised if needed so the subsampled photo fits in the pixel budget.
+     * @param width Width of the photo.
+     * @param height Height of the photo.
+     * @param minWidth Smallest width wanted, or 0 for no limit.
+     * @param minHeight Smallest height wanted, or 0 for no limit.
+     * @return Subsampling step, at least 1.
+     */
+    static int step(int width, int height, int minWidth, int minHeight){
+        int step = Integer.MAX_VALUE;
+        if (minWidth > 0){
+            step = Math.min(step, width / minWidth);
+        }
+        if (minHeight > 0){
+            step = Math.min(step, height / minHeight);
+        }
+        if (step == Integer.MAX_VALUE){
+            step = 1;
+        }
+        step = Math.max(1, step);
+        while (pixels(width, height, step) > pixelBudget){
+            step++;
+        }
+        return step;
+    }
+
+    /**
+     * Read a photo subsampled to fit in the given size, and turn it into the result.
+     * Holds the subsampled photo, and the scaled copy convert makes of it, against the
+     * budget until convert is done.
+     * @param file Photo file.
+     * @param size Width and height of the photo.
+     * @param target Width and height wanted.
+     * @param convert Turns the subsampled photo into the result.
+     * @return Result of convert, or null if ImageIO cannot read the photo.
+     * @throws IOException
+     */
+    private static <T> T read(File file, int[] size, int[] target,
+                              Function<BufferedImage, T> convert) throws IOException {
+        int step = step(size[0], size[1], target[0], target[1]);
+        long pixels = pixels(size[0], size[1], step) + (long) target[0] * target[1];
+        return read(file, step, pixels, convert);
+    }
+
+    /**
+     * Read a photo subsampled by the given step, and turn it into the result. The given
+     * number of pixels is held against the budget from before the photo is read until
+     * convert is done, so nothing made from the photo is left out of the budget.
+     * @param file Photo file.
+     * @param step Subsampling step.
+     * @param pixels Pixels to hold against the budget.
+     * @param convert Turns the subsampled photo into the result.
+     * @return Result of convert, or null if ImageIO cannot read the photo.
+     * @throws IOException
+     */
+    private static <T> T read(File file, int step, long pixels,
+                              Function<BufferedImage, T> convert) throws IOException {
+        acquire(pixels);
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)){
+            ImageReader reader = reader(in);
+            if (reader == null){
+                return null;
+            }
+            BufferedImage source;
+            try {
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                source = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+            return convert.apply(source);
+        } finally {
+            release(pixels);
+        }
+    }
+
+    /**
+     * Get a reader for an image stream.
+     * @param in Stream to read, or null.
+     * @return Reader with the stream as its input, or null if there is none.
+     */
+    private static ImageReader reader(ImageInputStream in){
+        if (in == null){
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()){
+            return null;
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(in, true, true);
+        return reader;
+    }
+
+    /**
+     * Scale a decoded photo to the given size.
+     * @param source Decoded photo.
+     * @param width Width to scale to.
+     * @param height Height to scale to.
+     * @return Scaled photo, which is the given photo if it already has the size.
+     */
+    private static BufferedImage scale(BufferedImage source, int width, int height){
+        if (source.getWidth() == width && source.getHeight() == height
+                && source.getType() == BufferedImage.TYPE_INT_ARGB){
+            return source;
+        }
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, width, height, null);
+        g.dispose();
+        return scaled;
+    }
+
+    /**
+     * Copy a decoded photo into a JavaFX image.
+     * @param image Decoded photo.
+     * @return JavaFX image with the same pixels.
+     */
+    private static Image toImage(BufferedImage image){
+        WritableImage copy = new WritableImage(image.getWidth(), image.getHeight());
+        copy.getPixelWriter().setPixels(0, 0, image.getWidth(), image.getHeight(),
+                PixelFormat.getIntArgbInstance(), argb(image), 0, image.getWidth());
+        return copy;
+    }
+
+    /**
+     * Get the pixels of a decoded photo as ARGB ints.
+     * @param image Decoded photo.
+     * @return Pixels, row by row.
+     */
+    private static int[] argb(BufferedImage image){
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    /**
+     * Get the number of pixels of a subsampled photo.
+     * @param width Width of the photo.
+     * @param height Height of the photo.
+     * @param step Subsampling step.
+     * @return Number of pixels.
+     */
+    private static long pixels(int width, int height, int step){
+        return (long) ((width + step - 1) / step) * ((height + step - 1) / step);
+    }
+
+    /**
+     * Take pixels from the budget, waiting until enough are free. A decode that is bigger
+     * than the whole budget may still run once nothing else is decoding.
+     * @param pixels Number of pixels.
+     */
+    private static void acquire(long pixels){
+        synchronized (budgetLock){
+            boolean interrupted = false;
+            while (pixelsInUse > 0 && pixelsInUse + pixels > pixelBudget){
+                try {
+                    budgetLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            pixelsInUse += pixels;
+            if (interrupted){
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Give pixels back to the budget.
+     * @param pixels Number of pixels.
+     */
+    private static void release(long pixels){
+        synchronized (budgetLock){
+            pixelsInUse -= pixels;
+            budgetLock.notifyAll();
+        }
+    }
+}
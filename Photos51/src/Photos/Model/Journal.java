@@ -0,0 +1,177 @@
+package Photos.Model;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only journal of the changes made to the database since its last snapshot.
+ * Each change is written as a small record, so saving only costs what changed instead of
+ * the whole database. The Database replays these records on load and folds them back into
+ * a snapshot once the journal grows too large.
+ * Records are buffered in memory and written to the file by the PersistenceService.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class Journal {
+
+    /**
+     * The kinds of changes that can be recorded.
+     */
+    public enum Op {
+        ADD_USER,
+        DELETE_USER,
+        ADD_ALBUM,
+        DELETE_ALBUM,
+        RENAME_ALBUM,
+        ADD_PHOTO,
+        DELETE_PHOTO,
+        SET_CAPTION,
+        ADD_TAG,
+        DELETE_TAG,
+        ADD_CREATED_TAG,
+        LINK_PHOTO // Adds a photo that is already in another album, instead of a new one.
+    }
+
+    /**
+     * A single change read back from a journal file.
+     */
+    public static class Record {
+        public final long seq;
+        public final Op op;
+        public final String[] args;
+
+        private Record(long seq, Op op, String[] args){
+            this.seq = seq;
+            this.op = op;
+            this.args = args;
+        }
+    }
+
+    private final File file;
+    private final ByteArrayOutputStream pending;
+
+    /**
+     * Create the journal for the given file. New records are appended to whatever is
+     * already in it.
+     * @param file Journal file.
+     */
+    public Journal(File file){
+        this.file = file;
+        pending = new ByteArrayOutputStream();
+    }
+
+    /**
+     * Append a record to the journal. The record is only kept in memory until the
+     * next call to write(), so this never waits on the disk.
+     * The record is encoded on its own first, so one that cannot be encoded (such as an
+     * argument of 64KB or more) is left out whole instead of being cut off in the middle
+     * and hiding the records after it.
+     * @param seq Sequence number of this change.
+     * @param op Kind of change.
+     * @param args Arguments of the change.
+     * @throws IOException If the record cannot be encoded. Nothing is appended.
+     */
+    public void append(long seq, Op op, String... args) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        encode(new DataOutputStream(record), seq, op, args);
+        synchronized (this){
+            record.writeTo(pending);
+        }
+    }
+
+    /**
+     * Take the records that have not been written to the file yet.
+     * @return Encoded records, which may be empty.
+     */
+    private synchronized byte[] drain(){
+        byte[] bytes = pending.toByteArray();
+        pending.reset();
+        return bytes;
+    }
+
+    /**
+     * Write the records appended so far to the end of the journal file.
+     * @throws IOException
+     */
+    public void write() throws IOException {
+        byte[] bytes = drain();
+        if (bytes.length == 0){
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true)){
+            out.write(bytes);
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Drop the records that are already part of a snapshot of the database by rewriting
+     * the journal file with only the newer records.
+     * @param seq Sequence number of the last change in the snapshot.
+     * @throws IOException
+     */
+    public void truncate(long seq) throws IOException {
+        write();
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))){
+            for (Record record : read(file)){
+                if (record.seq > seq){
+                    encode(out, record.seq, record.op, record.args);
+                }
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Write a single record.
+     * @param out Stream to write to.
+     * @param seq Sequence number of the change.
+     * @param op Kind of change.
+     * @param args Arguments of the change.
+     * @throws IOException
+     */
+    private static void encode(DataOutputStream out, long seq, Op op, String[] args) throws IOException {
+        out.writeLong(seq);
+        out.writeByte(op.ordinal());
+        out.writeShort(args.length);
+        for (String arg : args){
+            out.writeUTF(arg);
+        }
+    }
+
+    /**
+     * Read all the records of a journal file. A record that was only partly written
+     * (for example, if the application was killed) ends the read.
+     * @param file Journal file.
+     * @return List of records found, which is empty if the file does not exist.
+     */
+    public static List<Record> read(File file){
+        List<Record> records = new ArrayList<Record>();
+        if (!file.exists()){
+            return records;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            Op[] ops = Op.values();
+            while (true){
+                long seq = in.readLong();
+                int op = in.readUnsignedByte();
+                String[] args = new String[in.readUnsignedShort()];
+                for (int i = 0; i < args.length; i++){
+                    args[i] = in.readUTF();
+                }
+                if (op >= ops.length){
+                    break;
+                }
+                records.add(new Record(seq, ops[op], args));
+            }
+        } catch (IOException e) {
+            // End of the journal, or a torn record at the end of it.
+        }
+        return records;
+    }
+}
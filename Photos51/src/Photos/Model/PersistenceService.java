@@ -0,0 +1,142 @@
+package Photos.Model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes the database to disk on a background thread, so the application never waits on
+ * the disk while the user is clicking around.
+ * Save requests that come in while one is already waiting are merged into it, and all
+ * writes happen in the order they were requested.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class PersistenceService {
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "database-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final File storeFile;
+    private final Journal journal;
+    private volatile boolean failed;
+
+    /**
+     * Constructor.
+     * @param storeFile File that holds the snapshot of the database.
+     * @param journal Journal of the changes made since the snapshot.
+     */
+    public PersistenceService(File storeFile, Journal journal){
+        this.storeFile = storeFile;
+        this.journal = journal;
+    }
+
+    /**
+     * Ask for the journal to be written to disk. Does nothing if a write is already
+     * waiting, since that write will pick up the new changes too.
+     */
+    public void requestFlush(){
+        if (flushQueued.compareAndSet(false, true)){
+            writer.execute(this::flush);
+        }
+    }
+
+    /**
+     * Ask for a snapshot of the database to be written to disk. Once it is written,
+     * the journal records it already holds are dropped.
+     * @param snapshot Serialized database.
+     * @param seq Sequence number of the last change in the snapshot.
+     */
+    public void requestSnapshot(byte[] snapshot, long seq){
+        writer.execute(() -> {
+            try {
+                journal.write();
+                writeAtomically(storeFile, snapshot);
+                journal.truncate(seq);
+                failed = false;
+            } catch (IOException e) {
+                e.printStackTrace();
+                failed = true;
+            }
+        });
+    }
+
+    /**
+     * Ask for the journal file to be cleaned up, dropping the records that are already
+     * in the snapshot and anything left half written by a crash.
+     * @param seq Sequence number of the last change in the snapshot.
+     */
+    public void requestRepair(long seq){
+        writer.execute(() -> {
+            try {
+                journal.truncate(seq);
+            } catch (IOException e) {
+                e.printStackTrace();
+                failed = true;
+            }
+        });
+    }
+
+    /**
+     * Write everything that is still waiting, and wait for it to be on disk.
+     * Used when the application closes.
+     * @return DBStatus of the writes.
+     */
+    public DBStatus flushAndWait(){
+        try {
+            writer.submit(this::flush).get();
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+            return DBStatus.FAILURE;
+        }
+        return failed ? DBStatus.FAILURE : DBStatus.SUCCESS;
+    }
+
+    /**
+     * Check if a write has failed since the last snapshot. If so, the journal may be
+     * missing changes and a new snapshot should be taken.
+     * @return True if a write failed, false elsewise.
+     */
+    public boolean hasFailed(){
+        return failed;
+    }
+
+    /**
+     * Write the journal to disk. Runs on the writer thread.
+     */
+    private void flush(){
+        flushQueued.set(false);
+        try {
+            journal.write();
+        } catch (IOException e) {
+            e.printStackTrace();
+            failed = true;
+        }
+    }
+
+    /**
+     * Write bytes to a file through a temporary file that is then moved over it, so a
+     * crash never leaves a half written file behind.
+     * @param file File to write.
+     * @param bytes Bytes to write.
+     * @throws IOException
+     */
+    private static void writeAtomically(File file, byte[] bytes) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)){
+            out.write(bytes);
+            out.getFD().sync();
+        }
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -1,10 +1,6 @@
 package Photos.Model;
 
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
-
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.Serializable;
 import java.text.ParseException;
@@ -21,23 +17,52 @@ import java.util.*;
 public class Photo implements Serializable, Cloneable {
 
     private static final long serialVersionUID = 2L;
+    private long id;
     public String caption;
     public GregorianCalendar dateModified;
-    private transient ImageView imageView;
-    private transient Image image;
+    private transient long size;
     private String directory;
     private File file;
     //private HashMap<String, ArrayList<String>> tagHashMap;
+
+    /**
+     * Tags of this photo, each as its ID in the owner's tag dictionary shifted left by one,
+     * with the lowest bit set if the tag allows multiple values.
+     */
+    private transient int[] tagCodes;
+    private transient TagDictionary dictionary;
+
+    /**
+     * Tags of a photo read from a file saved with Java serialization. Moved into tagCodes
+     * when the file is migrated, and null otherwise.
+     */
     private List<Tag> tags;
 
     /**
-     * Constructor for this photo.
+     * Constructor for this photo. Only the metadata of the file is read; the image
+     * itself is loaded the first time it is shown.
+     * @param directory Path of the photo.
+     * @throws FileNotFoundException If the file is not on the machine.
      */
     public Photo(String directory) throws FileNotFoundException {
+        this(directory, true);
+    }
+
+    /**
+     * Constructor for this photo.
+     * @param directory Path of the photo.
+     * @param check True to make sure the file exists, false to skip it (used when
+     *              replaying the database journal, where the photo may have since moved).
+     */
+    Photo(String directory, boolean check) throws FileNotFoundException {
         caption = "";
         //dateModified = new GregorianCalendar();
         this.directory = directory;
         this.file = new File(directory);
+        if (check && !file.isFile()){
+            throw new FileNotFoundException(directory);
+        }
+        size = file.length();
 
         // Set the date in a somewhat convoluted way.
         Date date = new Date(file.lastModified());
@@ -46,8 +71,39 @@ public class Photo implements Serializable, Cloneable {
         dateModified = calender;
 
         //tagHashMap = new HashMap<String, ArrayList<String>>();
-        tags = new ArrayList<Tag>();
-        getImageView();
+        tagCodes = new int[0];
+    }
+
+    /**
+     * Constructor for a photo that is being loaded from the database file.
+     * @param directory Path of the photo.
+     * @param caption Caption of the photo.
+     * @param dateModified Date the photo was last modified.
+     * @param dictionary Tag dictionary of the user that owns the photo.
+     * @param tags Tags of the photo.
+     */
+    Photo(String directory, String caption, GregorianCalendar dateModified, TagDictionary dictionary, List<Tag> tags){
+        this.caption = caption;
+        this.directory = directory;
+        this.file = new File(directory);
+        this.dateModified = dateModified;
+        setTags(dictionary, tags);
+    }
+
+    /**
+     * Get the ID of this photo, which stays the same for as long as its user has it.
+     * @return ID, or 0 if the photo was never added to an album.
+     */
+    public long getId(){
+        return id;
+    }
+
+    /**
+     * Set the ID of this photo. IDs are handed out by the user that owns the photo.
+     * @param id ID to set.
+     */
+    void setId(long id){
+        this.id = id;
     }
 
     /**
@@ -58,6 +114,25 @@ public class Photo implements Serializable, Cloneable {
         return this.file.toURI().toString();
     }
 
+    /**
+     * Get the directory this photo was loaded from.
+     * @return Directory of the photo file.
+     */
+    public String getDirectory(){
+        return this.directory;
+    }
+
+    /**
+     * Get the size of the photo file, in bytes.
+     * @return Size of the file, or 0 if it is not on the machine.
+     */
+    public long getSize(){
+        if (size == 0){
+            size = file.length();
+        }
+        return size;
+    }
+
     /**
      * Set the caption for this photo.
      * @param caption Caption to set.
@@ -83,65 +158,108 @@ public class Photo implements Serializable, Cloneable {
     }
 
     /**
-     * Get the imageView of this photo.
-     * @return ImageView found
-     * @throws FileNotFoundException
+     * Set the tags for this photo, replacing any it had.
+     * @param dictionary Tag dictionary of the user that owns the photo.
+     * @param tags List of tags.
      */
-    public ImageView getImageView() throws FileNotFoundException, ConcurrentModificationException {
+    void setTags(TagDictionary dictionary, List<Tag> tags){
+        this.dictionary = dictionary;
+        tagCodes = new int[tags.size()];
+        for (int i = 0; i < tagCodes.length; i++){
+            Tag tag = tags.get(i);
+            tagCodes[i] = code(dictionary.intern(tag), tag.canHaveMultiple());
+        }
+    }
 
-        this.image = new Image(new FileInputStream(directory));
+    /**
+     * Move the tags of a photo read from a file saved with Java serialization into the
+     * dictionary of the user that owns it.
+     * @param dictionary Tag dictionary of the user.
+     */
+    void migrateTags(TagDictionary dictionary){
+        setTags(dictionary, tags == null ? new ArrayList<Tag>() : tags);
+        tags = null;
+    }
 
-        this.imageView = new ImageView(image);
-        imageView.setFitWidth(100);
-        imageView.setPreserveRatio(true);
-        return imageView;
+    /**
+     * Make the tag codes of this photo refer to the given dictionary. Used when a photo
+     * joins a user's library.
+     * @param owner Tag dictionary of the user that owns the photo.
+     */
+    void useDictionary(TagDictionary owner){
+        if (dictionary != owner){
+            setTags(owner, getTagsList());
+        }
     }
 
     /**
-     * Set the tags for this photo.
-     * @param tags List of tags.
+     * Get the tag codes of this photo, for the indexes of its owner.
+     * @return Tag codes, which must not be changed.
      */
-    public void setTags(List<Tag> tags){
-        this.tags = tags;
+    int[] getTagCodes(){
+        return tagCodes;
     }
 
     /**
-     * Get the tags for this photo.
-     * @return List of tags.
+     * Get the tags for this photo. The tags are made from the tag dictionary each time.
+     * @return Read-only list of tags.
      */
     public List<Tag> getTagsList(){
-        return tags;
+        List<Tag> list = new ArrayList<Tag>(tagCodes.length);
+        for (int code : tagCodes){
+            list.add(toTag(code));
+        }
+        return Collections.unmodifiableList(list);
     }
+
     /**
      * Add a tag to this photo, as long as there isn't a duplicate tag.
      * Note that this does not check if a tag is allowed to have more than
      * one value.
+     * @param owner Tag dictionary of the user that owns the photo.
      * @param tag tag
      * @return True if it was successfully added, false if this was a duplicate and
      * cannot be added.
      */
-    protected boolean addTag(Tag tag){
+    protected boolean addTag(TagDictionary owner, Tag tag){
+        useDictionary(owner);
+        int tagId = dictionary.intern(tag);
 
-        // Find any dups
-        if (hasTag(tag)){
-            return false;
-        }
-
-        // Find any dups, that have DIFFERENT VALUES.
-        Tag dup = getTag(tag);
-        if (dup != null){
-            // Can we have multiple tags of the same name?
-            if (dup.canHaveMultiple()){
-                tag.setMultiple(true);
-                tags.add(tag);
-                return true;
-            }
-            else{
+        // Find any dups, including ones that have DIFFERENT VALUES.
+        int name = dictionary.nameOf(tagId);
+        for (int code : tagCodes){
+            if (tagId(code) == tagId){
                 return false;
             }
+            if (dictionary.nameOf(tagId(code)) == name){
+                // Can we have multiple tags of the same name?
+                if ((code & 1) == 0){
+                    return false;
+                }
+                tag.setMultiple(true);
+                break;
+            }
         }
 
-        tags.add(tag);
+        tagCodes = Arrays.copyOf(tagCodes, tagCodes.length + 1);
+        tagCodes[tagCodes.length - 1] = code(tagId, tag.canHaveMultiple());
+        return true;
+    }
+
+    /**
+     * Delete a tag from this photo.
+     * @param tag Tag to delete.
+     * @return True if it was deleted, false if the photo did not have it.
+     */
+    protected boolean removeTag(Tag tag){
+        int i = indexOf(tag);
+        if (i == -1){
+            return false;
+        }
+        int[] kept = new int[tagCodes.length - 1];
+        System.arraycopy(tagCodes, 0, kept, 0, i);
+        System.arraycopy(tagCodes, i + 1, kept, i, kept.length - i);
+        tagCodes = kept;
         return true;
     }
 
@@ -152,12 +270,13 @@ public class Photo implements Serializable, Cloneable {
      * @return Tag if found, or null.
      */
     protected Tag getTag(Tag tag){
-        // Find this tag.
-        if (!tags.isEmpty()){
-            for (Tag t : tags){
-                if (t.sameName(tag)){
-                    return t;
-                }
+        // Find this tag by the ID of its name.
+        if (dictionary == null){
+            return null;
+        }
+        for (int code : tagCodes){
+            if (dictionary.name(tagId(code)).equals(tag.name)){
+                return toTag(code);
             }
         }
         return null;
@@ -165,21 +284,58 @@ public class Photo implements Serializable, Cloneable {
 
     /**
      * Check if this photo already has a tag that is EQUAL to the given tag.
+     * Does not allocate anything.
      * @param tag Tag in question.
      * @return True if it has this tag, false elsewise.
      */
     protected boolean hasTag(Tag tag){
-        // Check if this tag even exists.
-        if (!tags.isEmpty()){
-            // Loop through the values to see if there's any dups
-            for (Tag t : tags){
-                // Check if this is a dup
-                if (t.equals(tag)){
-                    return true;
-                }
+        return indexOf(tag) != -1;
+    }
+
+    /**
+     * Find a tag among the tag codes of this photo.
+     * @param tag Tag in question.
+     * @return Position of the tag, or -1 if the photo does not have it.
+     */
+    private int indexOf(Tag tag){
+        int tagId = dictionary == null ? -1 : dictionary.find(tag);
+        if (tagId == -1){
+            return -1;
+        }
+        for (int i = 0; i < tagCodes.length; i++){
+            if (tagId(tagCodes[i]) == tagId){
+                return i;
             }
         }
-        return false;
+        return -1;
+    }
+
+    /**
+     * Make a tag from a tag code.
+     * @param code Tag code.
+     * @return Tag.
+     */
+    private Tag toTag(int code){
+        return new Tag(dictionary.name(tagId(code)), dictionary.value(tagId(code)), (code & 1) != 0);
+    }
+
+    /**
+     * Make a tag code.
+     * @param tagId ID of the tag in the dictionary.
+     * @param multiple True if the tag allows multiple values.
+     * @return Tag code.
+     */
+    private static int code(int tagId, boolean multiple){
+        return tagId << 1 | (multiple ? 1 : 0);
+    }
+
+    /**
+     * Get the dictionary ID out of a tag code.
+     * @param code Tag code.
+     * @return Tag ID.
+     */
+    static int tagId(int code){
+        return code >>> 1;
     }
 
     /**
@@ -231,11 +387,9 @@ public class Photo implements Serializable, Cloneable {
      */
     @Override
     public Object clone() throws CloneNotSupportedException {
-        //TODO: check if we need to clone tags individually (to decouple references) - tags not copied
         Photo clone = (Photo)super.clone();
-        ArrayList<Tag> clonedTags = new ArrayList<>();
-        clonedTags.addAll(tags);
-        clone.tags = clonedTags;
+        clone.id = 0;
+        clone.tagCodes = tagCodes.clone();
         clone.file = new File(file.getPath());
         clone.dateModified = (GregorianCalendar) dateModified.clone();
         return clone;
@@ -0,0 +1,122 @@
+package Photos.Model;
+
+import java.util.Arrays;
+
+/**
+ * Set operations on sorted arrays of photo IDs, used by searches to combine the photos
+ * of several tags without building sets of Photo objects.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+final class PhotoIds {
+
+    static final long[] none = new long[0];
+
+    private PhotoIds(){
+    }
+
+    /**
+     * Find the IDs in both arrays. When one array is much smaller than the other, each of
+     * its IDs is looked up with a binary search instead of walking both arrays.
+     * @param a Sorted IDs.
+     * @param b Sorted IDs.
+     * @return Sorted IDs in both.
+     */
+    static long[] intersect(long[] a, long[] b){
+        if (a.length > b.length){
+            long[] swap = a;
+            a = b;
+            b = swap;
+        }
+        long[] found = new long[a.length];
+        int n = 0;
+        if (a.length * 16L < b.length){
+            for (long id : a){
+                if (Arrays.binarySearch(b, id) >= 0){
+                    found[n++] = id;
+                }
+            }
+        }
+        else{
+            int i = 0;
+            int j = 0;
+            while (i < a.length && j < b.length){
+                if (a[i] < b[j]){
+                    i++;
+                }
+                else if (a[i] > b[j]){
+                    j++;
+                }
+                else{
+                    found[n++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return n == found.length ? found : Arrays.copyOf(found, n);
+    }
+
+    /**
+     * Find the IDs in either array.
+     * @param a Sorted IDs.
+     * @param b Sorted IDs.
+     * @return Sorted IDs in either, each listed once.
+     */
+    static long[] union(long[] a, long[] b){
+        if (a.length == 0){
+            return b;
+        }
+        if (b.length == 0){
+            return a;
+        }
+        long[] found = new long[a.length + b.length];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length){
+            if (a[i] < b[j]){
+                found[n++] = a[i++];
+            }
+            else if (a[i] > b[j]){
+                found[n++] = b[j++];
+            }
+            else{
+                found[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        while (i < a.length){
+            found[n++] = a[i++];
+        }
+        while (j < b.length){
+            found[n++] = b[j++];
+        }
+        return n == found.length ? found : Arrays.copyOf(found, n);
+    }
+
+    /**
+     * Find the IDs in the first array that are not in the second.
+     * @param a Sorted IDs.
+     * @param b Sorted IDs to leave out.
+     * @return Sorted IDs in a but not in b.
+     */
+    static long[] difference(long[] a, long[] b){
+        if (b.length == 0){
+            return a;
+        }
+        long[] found = new long[a.length];
+        int n = 0;
+        int j = 0;
+        for (long id : a){
+            while (j < b.length && b[j] < id){
+                j++;
+            }
+            if (j == b.length || b[j] != id){
+                found[n++] = id;
+            }
+        }
+        return n == found.length ? found : Arrays.copyOf(found, n);
+    }
+}
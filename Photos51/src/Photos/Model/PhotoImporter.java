@@ -0,0 +1,238 @@
+package Photos.Model;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Imports every photo in a folder and its subfolders.
+ * Photos are made on a small pool of worker threads and handed over in batches, so the
+ * caller can add each batch to the database at once.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class PhotoImporter {
+
+    public static final int batchSize = 200;
+    private static final String[] extensions = {".png", ".jpg", ".jpeg", ".gif"};
+
+    /**
+     * What to do with a photo whose contents are already in the user's library.
+     */
+    public enum Duplicates {
+        LINK,
+        SKIP,
+        KEEP
+    }
+
+    private final List<Path> paths;
+    private final int threads;
+    private volatile boolean cancelled;
+    private DuplicateFinder finder;
+    private Supplier<Duplicates> ask;
+    private volatile Duplicates duplicates;
+    private boolean asked;
+
+    /**
+     * Constructor for an import of the given files.
+     * @param paths Files to import, usually from findPhotos.
+     */
+    public PhotoImporter(List<Path> paths){
+        this.paths = paths;
+        this.threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Find the photos in a folder and its subfolders. Hidden folders are skipped.
+     * @param folder Folder to look through.
+     * @return Paths of the photos found, in the order they were found.
+     * @throws IOException If the folder cannot be read.
+     */
+    public static List<Path> findPhotos(Path folder) throws IOException {
+        List<Path> found = new ArrayList<Path>();
+        Files.walkFileTree(folder, new SimpleFileVisitor<Path>(){
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs){
+                if (!dir.equals(folder) && dir.getFileName().toString().startsWith(".")){
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs){
+                if (attrs.isRegularFile() && isPhoto(file)){
+                    found.add(file.toAbsolutePath());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e){
+                // Skip anything that cannot be read.
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return found;
+    }
+
+    /**
+     * Check if a file has one of the extensions the application can show.
+     * @param file File in question.
+     * @return True if it is a photo, false elsewise.
+     */
+    private static boolean isPhoto(Path file){
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (String extension : extensions){
+            if (name.endsWith(extension)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check each photo against the user's library before it is imported.
+     * What to do with duplicates is only asked the first time one is found, and the
+     * answer is used for the rest of the import.
+     * @param finder Finder over the user's photos, from Database.getDuplicateFinder.
+     * @param ask Called on a worker thread with the import waiting. Returns LINK to hand
+     *            over the photo already in the library instead, SKIP to leave the photo
+     *            out, KEEP to import it anyway, or null to cancel the import.
+     */
+    public void setDuplicates(DuplicateFinder finder, Supplier<Duplicates> ask){
+        this.finder = finder;
+        this.ask = ask;
+    }
+
+    /**
+     * Get the number of files in this import.
+     * @return Number of files.
+     */
+    public int size(){
+        return paths.size();
+    }
+
+    /**
+     * Make the photos and hand them over in batches, in the order of the paths.
+     * Files that disappear during the import are skipped.
+     * @param batches Called with each batch of photos, on the calling thread.
+     * @param progress Called with the number of files looked at so far, after each batch.
+     * @return Number of photos made.
+     * @throws InterruptedException If the calling thread is interrupted.
+     */
+    public int importAll(Consumer<List<Photo>> batches, Consumer<Integer> progress) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "photo-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int imported = 0;
+        try {
+            for (int start = 0; start < paths.size() && !cancelled; start += batchSize){
+                // Only one batch is in flight at a time, so memory stays bounded.
+                List<Future<Photo>> pending = new ArrayList<Future<Photo>>();
+                for (Path path : paths.subList(start, Math.min(start + batchSize, paths.size()))){
+                    pending.add(pool.submit(makePhoto(path)));
+                }
+                List<Photo> batch = new ArrayList<Photo>(pending.size());
+                for (Future<Photo> future : pending){
+                    try {
+                        Photo photo = future.get();
+                        if (photo != null){
+                            batch.add(photo);
+                        }
+                    } catch (ExecutionException e) {
+                        // Skip this file.
+                    }
+                }
+                if (cancelled){
+                    break;
+                }
+                batches.accept(batch);
+                imported += batch.size();
+                progress.accept(Math.min(start + batchSize, paths.size()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return imported;
+    }
+
+    /**
+     * Stop the import after the batch that is being made. Batches already handed over stay.
+     */
+    public void cancel(){
+        cancelled = true;
+    }
+
+    /**
+     * Check if the import was cancelled.
+     * @return True if it was, false elsewise.
+     */
+    public boolean isCancelled(){
+        return cancelled;
+    }
+
+    /**
+     * Make the job that creates a single photo.
+     * @param path Path of the photo.
+     * @return Job that returns the photo, or null if it is gone or a skipped duplicate.
+     */
+    private Callable<Photo> makePhoto(Path path){
+        return () -> {
+            if (cancelled){
+                return null;
+            }
+            Photo photo;
+            try {
+                photo = new Photo(path.toString());
+            } catch (FileNotFoundException e) {
+                return null;
+            }
+            if (finder == null || duplicates == Duplicates.KEEP){
+                return photo;
+            }
+            // Adding it also catches the same photo showing up twice in this import.
+            Photo existing = finder.findOrAdd(photo);
+            if (existing == null){
+                return photo;
+            }
+            Duplicates choice = decide();
+            if (choice == Duplicates.LINK){
+                return existing;
+            }
+            return choice == Duplicates.KEEP ? photo : null;
+        };
+    }
+
+    /**
+     * Find out what to do with duplicates, asking the first time. Workers that find a
+     * duplicate while the question is open wait for the answer.
+     * @return LINK, SKIP or KEEP, or null if the import was cancelled instead.
+     */
+    private synchronized Duplicates decide(){
+        if (!asked){
+            asked = true;
+            duplicates = ask.get();
+            if (duplicates == null){
+                cancel();
+            }
+        }
+        return duplicates;
+    }
+}
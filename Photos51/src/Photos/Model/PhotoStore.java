@@ -0,0 +1,216 @@
+package Photos.Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The photos a user owns, by their ID, with the number of places in the user's albums
+ * that hold each one.
+ * Stored as an open addressing hash table over plain arrays: the IDs are kept in a long
+ * array and looked up with linear probing, so finding a photo does not box its ID or
+ * allocate anything. ID 0 marks an empty slot, which is why IDs start at 1.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+class PhotoStore {
+
+    private static final float maxLoad = 0.6f;
+
+    private long[] ids;
+    private Photo[] photos;
+    private int[] counts;
+    private int size;
+
+    /**
+     * Constructor for an empty store.
+     */
+    PhotoStore(){
+        ids = new long[16];
+        photos = new Photo[16];
+        counts = new int[16];
+    }
+
+    /**
+     * Get a photo by its ID.
+     * @param id ID of the photo.
+     * @return Photo, or null if there is none with that ID.
+     */
+    Photo get(long id){
+        int slot = find(id);
+        return slot == -1 ? null : photos[slot];
+    }
+
+    /**
+     * Get the number of places that hold a photo.
+     * @param photo Photo in question.
+     * @return Number of places, which is 0 if the photo is not in the store.
+     */
+    int count(Photo photo){
+        int slot = find(photo.getId());
+        return slot == -1 || photos[slot] != photo ? 0 : counts[slot];
+    }
+
+    /**
+     * Get the number of photos in the store.
+     * @return Number of photos.
+     */
+    int size(){
+        return size;
+    }
+
+    /**
+     * Record that one more place holds this photo. The photo must already have an ID
+     * that no other photo in the store has.
+     * @param photo Photo added.
+     * @return True if the photo was not in the store before, false elsewise.
+     */
+    boolean add(Photo photo){
+        int slot = find(photo.getId());
+        if (slot != -1){
+            counts[slot]++;
+            return false;
+        }
+        if (size + 1 > ids.length * maxLoad){
+            grow();
+        }
+        insert(photo, 1);
+        size++;
+        return true;
+    }
+
+    /**
+     * Record that one less place holds this photo.
+     * @param photo Photo removed.
+     * @return True if nothing holds the photo anymore and it was dropped, false elsewise.
+     */
+    boolean remove(Photo photo){
+        int slot = find(photo.getId());
+        if (slot == -1 || photos[slot] != photo){
+            return false;
+        }
+        if (counts[slot] > 1){
+            counts[slot]--;
+            return false;
+        }
+        delete(slot);
+        size--;
+        return true;
+    }
+
+    /**
+     * Get the IDs of every photo in the store.
+     * @return Sorted array of IDs.
+     */
+    long[] ids(){
+        long[] found = new long[size];
+        int n = 0;
+        for (long id : ids){
+            if (id != 0){
+                found[n++] = id;
+            }
+        }
+        Arrays.sort(found);
+        return found;
+    }
+
+    /**
+     * Get the photos with the given IDs.
+     * @param found IDs of the photos.
+     * @return List of the photos, in the same order. IDs not in the store are skipped.
+     */
+    List<Photo> get(long[] found){
+        List<Photo> list = new ArrayList<Photo>(found.length);
+        for (long id : found){
+            Photo photo = get(id);
+            if (photo != null){
+                list.add(photo);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Find the slot of an ID.
+     * @param id ID to find.
+     * @return Slot, or -1 if the ID is not in the store.
+     */
+    private int find(long id){
+        if (id == 0){
+            return -1;
+        }
+        int mask = ids.length - 1;
+        for (int slot = hash(id) & mask; ids[slot] != 0; slot = (slot + 1) & mask){
+            if (ids[slot] == id){
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Put a photo in the first free slot for its ID.
+     * @param photo Photo to put.
+     * @param count Number of places that hold it.
+     */
+    private void insert(Photo photo, int count){
+        int mask = ids.length - 1;
+        int slot = hash(photo.getId()) & mask;
+        while (ids[slot] != 0){
+            slot = (slot + 1) & mask;
+        }
+        ids[slot] = photo.getId();
+        photos[slot] = photo;
+        counts[slot] = count;
+    }
+
+    /**
+     * Empty a slot, moving later entries of the same run back so every ID can still be
+     * found from its home slot without leaving markers behind.
+     * @param slot Slot to empty.
+     */
+    private void delete(int slot){
+        int mask = ids.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; ids[next] != 0; next = (next + 1) & mask){
+            int home = hash(ids[next]) & mask;
+            // Move the entry if the hole is between its home slot and where it is now.
+            if (((next - home) & mask) >= ((next - hole) & mask)){
+                ids[hole] = ids[next];
+                photos[hole] = photos[next];
+                counts[hole] = counts[next];
+                hole = next;
+            }
+        }
+        ids[hole] = 0;
+        photos[hole] = null;
+        counts[hole] = 0;
+    }
+
+    /**
+     * Double the size of the table.
+     */
+    private void grow(){
+        long[] oldIds = ids;
+        Photo[] oldPhotos = photos;
+        int[] oldCounts = counts;
+        ids = new long[oldIds.length * 2];
+        photos = new Photo[oldIds.length * 2];
+        counts = new int[oldIds.length * 2];
+        for (int i = 0; i < oldIds.length; i++){
+            if (oldIds[i] != 0){
+                insert(oldPhotos[i], oldCounts[i]);
+            }
+        }
+    }
+
+    /**
+     * Spread the bits of an ID, since IDs are handed out in order.
+     * @param id ID to hash.
+     * @return Hash of the ID.
+     */
+    private static int hash(long id){
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
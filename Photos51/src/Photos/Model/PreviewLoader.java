@@ -0,0 +1,164 @@
+package Photos.Model;
+
+import javafx.scene.image.Image;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Loads the large preview of the selected photo in the background, decoded at the size
+ * it is shown at instead of full size.
+ * The photos before and after the selected one are loaded too, so stepping through an
+ * album shows the next photo right away. Only the previews around the selected photo are
+ * kept; when the selection jumps, previews that are no longer needed are dropped and
+ * loads that have not started yet are cancelled.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class PreviewLoader {
+
+    /**
+     * One thread is shared by every loader, so the selected photo is never decoded at
+     * the same time as its neighbours.
+     */
+    private static final ThreadPoolExecutor decoder = new ThreadPoolExecutor(1, 1,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), r -> {
+                Thread thread = new Thread(r, "preview-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final double width;
+    private final double height;
+    private final int ahead;
+    private final LinkedHashMap<String, FutureTask<Image>> previews;
+    private volatile String wanted;
+    private volatile Consumer<Image> listener;
+
+    /**
+     * Constructor for a loader of previews of the given size.
+     * @param width Width of the area the preview is shown in.
+     * @param height Height of the area the preview is shown in.
+     * @param ahead Number of photos to load on each side of the selected one.
+     */
+    public PreviewLoader(double width, double height, int ahead){
+        this.width = width;
+        this.height = height;
+        this.ahead = ahead;
+        previews = new LinkedHashMap<String, FutureTask<Image>>();
+    }
+
+    /**
+     * Select a photo to show. Its preview is handed to the listener as soon as it is
+     * loaded, which may be right away, and then its neighbours are loaded.
+     * Should be called on the JavaFX thread.
+     * @param photos Photos in the order they are stepped through.
+     * @param index Index of the selected photo.
+     * @param onLoaded Called with the preview, or null if the photo could not be read.
+     *                 May be called on the loading thread.
+     */
+    public void select(List<Photo> photos, int index, Consumer<Image> onLoaded){
+        // Photos to keep, closest to the selected one first.
+        LinkedHashMap<String, Photo> window = new LinkedHashMap<String, Photo>();
+        window.put(photos.get(index).getDirectory(), photos.get(index));
+        for (int i = 1; i <= ahead; i++){
+            if (index + i < photos.size()){
+                window.putIfAbsent(photos.get(index + i).getDirectory(), photos.get(index + i));
+            }
+            if (index - i >= 0){
+                window.putIfAbsent(photos.get(index - i).getDirectory(), photos.get(index - i));
+            }
+        }
+
+        // Drop the previews outside of the window, and take the ones that have not started
+        // out of the queue so they can be queued again in the new order.
+        HashMap<String, FutureTask<Image>> waiting = new HashMap<String, FutureTask<Image>>();
+        Iterator<Map.Entry<String, FutureTask<Image>>> it = previews.entrySet().iterator();
+        while (it.hasNext()){
+            Map.Entry<String, FutureTask<Image>> entry = it.next();
+            FutureTask<Image> task = entry.getValue();
+            if (!window.containsKey(entry.getKey())){
+                task.cancel(false);
+                decoder.remove(task);
+                it.remove();
+            }
+            else if (decoder.remove(task)){
+                waiting.put(entry.getKey(), task);
+            }
+        }
+
+        String selected = photos.get(index).getDirectory();
+        listener = onLoaded;
+        wanted = selected;
+        for (Map.Entry<String, Photo> entry : window.entrySet()){
+            String key = entry.getKey();
+            FutureTask<Image> task = waiting.get(key);
+            if (task == null && !previews.containsKey(key)){
+                task = load(entry.getValue());
+                previews.put(key, task);
+            }
+            if (task != null){
+                decoder.execute(task);
+            }
+        }
+
+        FutureTask<Image> current = previews.get(selected);
+        if (current.isDone()){
+            onLoaded.accept(result(current));
+        }
+    }
+
+    /**
+     * Forget every preview and stop handing them out, such as when leaving the album.
+     */
+    public void clear(){
+        wanted = null;
+        listener = null;
+        for (FutureTask<Image> task : previews.values()){
+            task.cancel(false);
+            decoder.remove(task);
+        }
+        previews.clear();
+    }
+
+    /**
+     * Make the task that loads the preview of a photo.
+     * @param photo Photo to load.
+     * @return Task, which has not been queued yet.
+     */
+    private FutureTask<Image> load(Photo photo){
+        String key = photo.getDirectory();
+        return new FutureTask<Image>(() -> ImageDecoder.decode(new File(photo.getDirectory()), width, height)){
+            @Override
+            protected void done(){
+                Consumer<Image> onLoaded = listener;
+                if (!isCancelled() && key.equals(wanted) && onLoaded != null){
+                    onLoaded.accept(result(this));
+                }
+            }
+        };
+    }
+
+    /**
+     * Get the preview a finished task loaded.
+     * @param task Finished task.
+     * @return Preview, or null if it could not be loaded.
+     */
+    private static Image result(FutureTask<Image> task){
+        try {
+            return task.get();
+        } catch (InterruptedException | ExecutionException | RuntimeException e) {
+            return null;
+        }
+    }
+}
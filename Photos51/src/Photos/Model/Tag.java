@@ -16,6 +16,8 @@ import java.util.List;
 
 public class Tag implements Serializable, Cloneable {
 
+    // Pinned to what older versions computed, so their database files can still be migrated.
+    private static final long serialVersionUID = 7214628207765901649L;
     public String name;
     public String value;
     private boolean allowMultiple;
@@ -57,13 +59,31 @@ public class Tag implements Serializable, Cloneable {
         return this.name.equals(tag.name);
     }
 
-    public boolean equals(Tag tag){
-        if (this.name.equals(tag.name) && this.value.equals(tag.value)){
+    /**
+     * Check if another tag has the same name and value. Whether the tags allow multiple
+     * values does not matter.
+     * @param o Object to compare to.
+     * @return True if it is a tag with the same name and value, false elsewise.
+     */
+    @Override
+    public boolean equals(Object o){
+        if (this == o){
             return true;
         }
-        else{
+        if (!(o instanceof Tag)){
             return false;
         }
+        Tag tag = (Tag) o;
+        return this.name.equals(tag.name) && this.value.equals(tag.value);
+    }
+
+    /**
+     * Hash the name and value of this tag, to match equals.
+     * @return Hash code.
+     */
+    @Override
+    public int hashCode(){
+        return 31 * name.hashCode() + value.hashCode();
     }
 
     public static Tag stringToTag(String s){
@@ -0,0 +1,115 @@
+package Photos.Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Gives each of a user's tag names, and each name and value pair, a small integer ID, so
+ * a photo can keep its tags as an int array instead of its own Tag objects and strings.
+ * Every name and value is only stored once per user. IDs start at 0 and never change.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+class TagDictionary {
+
+    private final HashMap<String, Integer> nameIds;
+    private final ArrayList<String> names;
+    private final HashMap<Tag, Integer> tagIds;
+    private final ArrayList<Tag> tags;
+    private int[] tagNames;
+
+    /**
+     * Constructor for an empty dictionary.
+     */
+    TagDictionary(){
+        nameIds = new HashMap<String, Integer>();
+        names = new ArrayList<String>();
+        tagIds = new HashMap<Tag, Integer>();
+        tags = new ArrayList<Tag>();
+        tagNames = new int[16];
+    }
+
+    /**
+     * Get the ID of a tag's name and value, giving it one if it does not have one yet.
+     * @param tag Tag in question.
+     * @return Tag ID.
+     */
+    int intern(Tag tag){
+        Integer id = tagIds.get(tag);
+        if (id != null){
+            return id;
+        }
+        // Keep a copy, so changes to the given tag cannot change the key.
+        Tag copy = new Tag(tag.name, tag.value);
+        int tagId = tags.size();
+        tags.add(copy);
+        tagIds.put(copy, tagId);
+        if (tagId == tagNames.length){
+            tagNames = Arrays.copyOf(tagNames, tagId * 2);
+        }
+        tagNames[tagId] = internName(tag.name);
+        return tagId;
+    }
+
+    /**
+     * Get the ID of a tag's name and value without giving it one.
+     * @param tag Tag in question.
+     * @return Tag ID, or -1 if no photo of the user was ever given this tag.
+     */
+    int find(Tag tag){
+        Integer id = tagIds.get(tag);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Get the ID of the name of a tag.
+     * @param tagId Tag ID.
+     * @return Name ID.
+     */
+    int nameOf(int tagId){
+        return tagNames[tagId];
+    }
+
+    /**
+     * Get the name of a tag.
+     * @param tagId Tag ID.
+     * @return Name of the tag.
+     */
+    String name(int tagId){
+        return names.get(tagNames[tagId]);
+    }
+
+    /**
+     * Get the value of a tag.
+     * @param tagId Tag ID.
+     * @return Value of the tag.
+     */
+    String value(int tagId){
+        return tags.get(tagId).value;
+    }
+
+    /**
+     * Get the number of tag IDs given out.
+     * @return Number of tags.
+     */
+    int size(){
+        return tags.size();
+    }
+
+    /**
+     * Get the ID of a name, giving it one if it does not have one yet.
+     * @param name Name in question.
+     * @return Name ID.
+     */
+    private int internName(String name){
+        Integer id = nameIds.get(name);
+        if (id != null){
+            return id;
+        }
+        int nameId = names.size();
+        names.add(name);
+        nameIds.put(name, nameId);
+        return nameId;
+    }
+}
@@ -0,0 +1,186 @@
+package Photos.Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Index of a user's photos by their tags, so a tag search only has to look at the
+ * photos that have the tag.
+ * Each tag keeps a sorted array of the IDs of its photos, so searches can combine tags
+ * with PhotoIds. The arrays are found by the tag's ID in the user's TagDictionary, so
+ * indexing a photo only reads its tag codes. The user's PhotoStore decides when a photo
+ * comes and goes; a photo shared by several albums is only added once.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+class TagIndex {
+
+    /**
+     * Sorted IDs of the photos that have one tag value.
+     */
+    private static class Posting {
+        private long[] ids = new long[4];
+        private int size;
+
+        /**
+         * Add an ID, keeping the array sorted. IDs are handed out in order, so this is
+         * usually an append.
+         * @param id ID to add.
+         */
+        void add(long id){
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i >= 0){
+                return;
+            }
+            i = -i - 1;
+            if (size == ids.length){
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, i, ids, i + 1, size - i);
+            ids[i] = id;
+            size++;
+        }
+
+        /**
+         * Remove an ID.
+         * @param id ID to remove.
+         */
+        void remove(long id){
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i < 0){
+                return;
+            }
+            System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+            size--;
+        }
+    }
+
+    private final TagDictionary dictionary;
+    private final ArrayList<Posting> postings;
+    private int size;
+
+    /**
+     * Constructor for an empty index.
+     * @param dictionary Tag dictionary of the user.
+     */
+    TagIndex(TagDictionary dictionary){
+        this.dictionary = dictionary;
+        postings = new ArrayList<Posting>();
+    }
+
+    /**
+     * Get the IDs of the photos that have the given tag.
+     * @param tag Tag to find.
+     * @return Sorted array of IDs, which the caller may keep.
+     */
+    long[] get(Tag tag){
+        Posting posting = find(tag);
+        return posting == null ? PhotoIds.none : Arrays.copyOf(posting.ids, posting.size);
+    }
+
+    /**
+     * Get the number of photos that have the given tag.
+     * @param tag Tag to find.
+     * @return Number of photos.
+     */
+    int count(Tag tag){
+        Posting posting = find(tag);
+        return posting == null ? 0 : posting.size;
+    }
+
+    /**
+     * Get the number of photos in the index.
+     * @return Number of photos.
+     */
+    int size(){
+        return size;
+    }
+
+    /**
+     * Index a photo that was just added to the user's library.
+     * @param photo Photo that was added.
+     */
+    void addPhoto(Photo photo){
+        size++;
+        for (int code : photo.getTagCodes()){
+            post(photo, Photo.tagId(code));
+        }
+    }
+
+    /**
+     * Drop a photo that is no longer in the user's library.
+     * @param photo Photo that was removed.
+     */
+    void removePhoto(Photo photo){
+        size--;
+        for (int code : photo.getTagCodes()){
+            unpost(photo, Photo.tagId(code));
+        }
+    }
+
+    /**
+     * Record a tag that was just added to a photo in the user's library.
+     * @param photo Photo that got the tag.
+     * @param tag Tag added.
+     */
+    void addTag(Photo photo, Tag tag){
+        post(photo, dictionary.intern(tag));
+    }
+
+    /**
+     * Record a tag that was just deleted from a photo in the user's library.
+     * @param photo Photo that had the tag.
+     * @param tag Tag deleted.
+     */
+    void removeTag(Photo photo, Tag tag){
+        if (!photo.hasTag(tag)){
+            unpost(photo, dictionary.find(tag));
+        }
+    }
+
+    /**
+     * Find the posting of a tag.
+     * @param tag Tag to find.
+     * @return Posting, or null if no photo has the tag.
+     */
+    private Posting find(Tag tag){
+        int tagId = dictionary.find(tag);
+        return tagId == -1 || tagId >= postings.size() ? null : postings.get(tagId);
+    }
+
+    /**
+     * Add a photo to the posting of a tag.
+     * @param photo Photo to add.
+     * @param tagId ID of the tag in the dictionary.
+     */
+    private void post(Photo photo, int tagId){
+        while (postings.size() <= tagId){
+            postings.add(null);
+        }
+        Posting posting = postings.get(tagId);
+        if (posting == null){
+            posting = new Posting();
+            postings.set(tagId, posting);
+        }
+        posting.add(photo.getId());
+    }
+
+    /**
+     * Remove a photo from the posting of a tag, dropping postings that become empty.
+     * @param photo Photo to remove.
+     * @param tagId ID of the tag in the dictionary, or -1 if it has none.
+     */
+    private void unpost(Photo photo, int tagId){
+        if (tagId == -1 || tagId >= postings.size()){
+            return;
+        }
+        Posting posting = postings.get(tagId);
+        if (posting == null){
+            return;
+        }
+        posting.remove(photo.getId());
+        if (posting.size == 0){
+            postings.set(tagId, null);
+        }
+    }
+}
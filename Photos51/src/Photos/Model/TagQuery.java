@@ -0,0 +1,533 @@
+package Photos.Model;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A search over a user's tags, such as
+ * (person=alice OR person=bob) AND location=paris AND NOT mood=sad.
+ * Terms are written as tag=value, and can be combined with AND, OR, NOT and parentheses.
+ * NOT binds tightest, then AND, then OR. Keywords can be written in any case. A tag or
+ * value with a keyword, parenthesis or = in it can be put in quotes, as in
+ * location="salt and pepper", though a keyword that cannot start a new term, such as the
+ * and in location=salt and pepper, is read as part of the value anyway.
+ * Queries are evaluated on sorted arrays of photo IDs. The terms of an AND that are
+ * expected to match the fewest photos are looked at first, the rest only filter what is
+ * left, and the search stops as soon as nothing is left.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public abstract class TagQuery {
+
+    /**
+     * Find the photos that match this query.
+     * @param index Tag index of the user.
+     * @param all Sorted IDs of every photo of the user. Only used by NOT, and may be null
+     *            if usesNot() is false.
+     * @return Sorted IDs of the photos found.
+     */
+    abstract long[] evaluate(TagIndex index, long[] all);
+
+    /**
+     * Guess how many photos this query will match, without evaluating it.
+     * @param index Tag index of the user.
+     * @return Estimated number of photos.
+     */
+    abstract int estimate(TagIndex index);
+
+    /**
+     * Find which of the given photos match this query, without building the set of all
+     * matches.
+     * @param index Tag index of the user.
+     * @param ids Sorted IDs of the photos in question.
+     * @return Sorted IDs of the ones that match.
+     */
+    abstract long[] filter(TagIndex index, long[] ids);
+
+    /**
+     * Check if this query uses NOT anywhere, meaning it needs all of the user's photos.
+     * @return True if it does, false elsewise.
+     */
+    abstract boolean usesNot();
+
+    /**
+     * Parse a query.
+     * @param s Query to parse.
+     * @return Query parsed.
+     * @throws ParseException If the query is not valid. The error offset is the position
+     * of the word that could not be understood.
+     */
+    public static TagQuery parse(String s) throws ParseException {
+        Parser parser = new Parser(s);
+        TagQuery query = parser.parseOr();
+        if (parser.peek() != null){
+            throw parser.error("Unexpected " + parser.peek());
+        }
+        return query;
+    }
+
+    /**
+     * A single tag=value term.
+     */
+    private static class Term extends TagQuery {
+        private final Tag tag;
+
+        Term(Tag tag){
+            this.tag = tag;
+        }
+
+        @Override
+        long[] evaluate(TagIndex index, long[] all){
+            return index.get(tag);
+        }
+
+        @Override
+        int estimate(TagIndex index){
+            return index.count(tag);
+        }
+
+        @Override
+        long[] filter(TagIndex index, long[] ids){
+            return PhotoIds.intersect(ids, index.get(tag));
+        }
+
+        @Override
+        boolean usesNot(){
+            return false;
+        }
+    }
+
+    /**
+     * Photos that do not match the inner query.
+     */
+    private static class Not extends TagQuery {
+        private final TagQuery inner;
+
+        Not(TagQuery inner){
+            this.inner = inner;
+        }
+
+        @Override
+        long[] evaluate(TagIndex index, long[] all){
+            return filter(index, all);
+        }
+
+        @Override
+        int estimate(TagIndex index){
+            return Math.max(0, index.size() - inner.estimate(index));
+        }
+
+        @Override
+        long[] filter(TagIndex index, long[] ids){
+            return PhotoIds.difference(ids, inner.filter(index, ids));
+        }
+
+        @Override
+        boolean usesNot(){
+            return true;
+        }
+    }
+
+    /**
+     * Photos that match every one of the inner queries.
+     */
+    private static class And extends TagQuery {
+        private final List<TagQuery> terms;
+
+        And(List<TagQuery> terms){
+            this.terms = terms;
+        }
+
+        @Override
+        long[] evaluate(TagIndex index, long[] all){
+            // Start from the term expected to match the fewest photos, and only check
+            // the others against what is left.
+            List<TagQuery> ordered = new ArrayList<TagQuery>(terms);
+            Collections.sort(ordered, Comparator.comparingInt(q -> q.estimate(index)));
+            long[] found = ordered.get(0).evaluate(index, all);
+            for (int i = 1; i < ordered.size() && found.length > 0; i++){
+                found = ordered.get(i).filter(index, found);
+            }
+            return found;
+        }
+
+        @Override
+        int estimate(TagIndex index){
+            int min = index.size();
+            for (TagQuery q : terms){
+                min = Math.min(min, q.estimate(index));
+                if (min == 0){
+                    break;
+                }
+            }
+            return min;
+        }
+
+        @Override
+        long[] filter(TagIndex index, long[] ids){
+            for (TagQuery q : terms){
+                if (ids.length == 0){
+                    break;
+                }
+                ids = q.filter(index, ids);
+            }
+            return ids;
+        }
+
+        @Override
+        boolean usesNot(){
+            for (TagQuery q : terms){
+                if (q.usesNot()){
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Photos that match any of the inner queries.
+     */
+    private static class Or extends TagQuery {
+        private final List<TagQuery> terms;
+
+        Or(List<TagQuery> terms){
+            this.terms = terms;
+        }
+
+        @Override
+        long[] evaluate(TagIndex index, long[] all){
+            long[] found = PhotoIds.none;
+            for (TagQuery q : terms){
+                found = PhotoIds.union(found, q.evaluate(index, all));
+            }
+            return found;
+        }
+
+        @Override
+        int estimate(TagIndex index){
+            long sum = 0;
+            for (TagQuery q : terms){
+                sum += q.estimate(index);
+            }
+            return (int) Math.min(sum, index.size());
+        }
+
+        @Override
+        long[] filter(TagIndex index, long[] ids){
+            long[] found = PhotoIds.none;
+            for (TagQuery q : terms){
+                found = PhotoIds.union(found, q.filter(index, ids));
+            }
+            return found;
+        }
+
+        @Override
+        boolean usesNot(){
+            for (TagQuery q : terms){
+                if (q.usesNot()){
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Recursive descent parser for queries.
+     */
+    private static class Parser {
+        private final List<Token> tokens;
+        private int pos;
+
+        /**
+         * A parenthesis, a keyword, or a tag=value term of the query.
+         */
+        private static class Token {
+            final String text;
+            final int offset;
+            final boolean term;
+            final int separators;
+            final Tag tag;
+
+            /**
+             * Constructor for a parenthesis or keyword.
+             * @param text Parenthesis, or keyword in upper case.
+             * @param offset Position in the query.
+             */
+            Token(String text, int offset){
+                this(text, offset, false, 0, null);
+            }
+
+            /**
+             * Constructor for any token.
+             * @param text Text of the token, without quotes.
+             * @param offset Position in the query.
+             * @param term True for a term, false elsewise.
+             * @param separators Number of = signs in the term that are not in quotes.
+             * @param tag Tag and value of the term, or null if it has no = sign.
+             */
+            Token(String text, int offset, boolean term, int separators, Tag tag){
+                this.text = text;
+                this.offset = offset;
+                this.term = term;
+                this.separators = separators;
+                this.tag = tag;
+            }
+        }
+
+        /**
+         * A run of characters between whitespace and parentheses, with any quotes taken out.
+         */
+        private static class Word {
+            final int start;
+            final int end;
+            final String text;
+            final boolean quoted;
+            final List<Integer> equals;
+
+            Word(int start, int end, String text, boolean quoted, List<Integer> equals){
+                this.start = start;
+                this.end = end;
+                this.text = text;
+                this.quoted = quoted;
+                this.equals = equals;
+            }
+
+            boolean isParen(){
+                return !quoted && (text.equals("(") || text.equals(")"));
+            }
+
+            boolean isKeyword(){
+                return !quoted && Parser.isKeyword(text);
+            }
+        }
+
+        /**
+         * Split the query into parentheses, keywords and terms. The words of a term are
+         * joined back together with the whitespace between them, so tags with spaces can
+         * be searched. A word is only a keyword where it can be one: NOT before a term,
+         * and AND or OR after a whole tag=value term when another term follows. Anything
+         * in quotes, such as location="salt and pepper", is always part of a term.
+         * @param s Query to split.
+         * @throws ParseException If a quote is not closed.
+         */
+        Parser(String s) throws ParseException {
+            List<Word> words = split(s);
+            tokens = new ArrayList<Token>();
+            StringBuilder term = new StringBuilder();
+            List<Integer> equals = new ArrayList<Integer>();
+            int termStart = 0;
+            Word last = null;
+            for (int i = 0; i < words.size(); i++){
+                Word word = words.get(i);
+                boolean keyword = word.isKeyword() && (term.length() == 0
+                        || (!word.text.equalsIgnoreCase("NOT") && isWhole(term, equals) && termFollows(words, i + 1)));
+                if (word.isParen() || keyword){
+                    addTerm(term, equals, termStart);
+                    tokens.add(new Token(keyword ? word.text.toUpperCase() : word.text, word.start));
+                }
+                else{
+                    if (term.length() == 0){
+                        termStart = word.start;
+                    }
+                    else{
+                        term.append(s, last.end, word.start);
+                    }
+                    for (int at : word.equals){
+                        equals.add(term.length() + at);
+                    }
+                    term.append(word.text);
+                    last = word;
+                }
+            }
+            addTerm(term, equals, termStart);
+        }
+
+        /**
+         * Split a query into words and parentheses. Quotes are taken out of the words,
+         * and whatever is between them is kept as it is.
+         * @param s Query to split.
+         * @return Words found.
+         * @throws ParseException If a quote is not closed.
+         */
+        private static List<Word> split(String s) throws ParseException {
+            List<Word> words = new ArrayList<Word>();
+            int i = 0;
+            while (i < s.length()){
+                char c = s.charAt(i);
+                if (Character.isWhitespace(c)){
+                    i++;
+                    continue;
+                }
+                int start = i;
+                if (c == '(' || c == ')'){
+                    i++;
+                    words.add(new Word(start, i, String.valueOf(c), false, Collections.<Integer>emptyList()));
+                    continue;
+                }
+                StringBuilder text = new StringBuilder();
+                List<Integer> equals = new ArrayList<Integer>();
+                boolean quoted = false;
+                boolean inQuotes = false;
+                int quoteStart = 0;
+                while (i < s.length()){
+                    c = s.charAt(i);
+                    if (c == '"'){
+                        quoted = true;
+                        inQuotes = !inQuotes;
+                        quoteStart = i;
+                    }
+                    else if (!inQuotes && (Character.isWhitespace(c) || c == '(' || c == ')')){
+                        break;
+                    }
+                    else{
+                        // Only an = outside quotes splits a tag from its value.
+                        if (c == '=' && !inQuotes){
+                            equals.add(text.length());
+                        }
+                        text.append(c);
+                    }
+                    i++;
+                }
+                if (inQuotes){
+                    throw new ParseException("Missing closing quote", quoteStart);
+                }
+                words.add(new Word(start, i, text.toString(), quoted, equals));
+            }
+            return words;
+        }
+
+        /**
+         * Check if a term has both a tag and a value, so it can end there.
+         * @param term Term so far.
+         * @param equals Positions of the = signs in it that are not in quotes.
+         * @return True if it does, false elsewise.
+         */
+        private static boolean isWhole(StringBuilder term, List<Integer> equals){
+            return !equals.isEmpty() && !term.substring(equals.get(0) + 1).trim().isEmpty();
+        }
+
+        /**
+         * Check if another term starts at the given word: a parenthesis or NOT, or words
+         * up to the next keyword that have an = in them. The end of the query, or of a
+         * parenthesis, counts too, so a keyword left there is reported as an error.
+         * @param words Words of the query.
+         * @param i Position of the word.
+         * @return True if one does, false elsewise.
+         */
+        private static boolean termFollows(List<Word> words, int i){
+            if (i == words.size()){
+                return true;
+            }
+            Word next = words.get(i);
+            if (!next.quoted && (next.text.equalsIgnoreCase("NOT") || next.isParen())){
+                return true;
+            }
+            for (; i < words.size() && !words.get(i).isParen() && !words.get(i).isKeyword(); i++){
+                if (!words.get(i).equals.isEmpty()){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Add the term read so far as a token, if there is one, and start a new one.
+         * @param term Term so far.
+         * @param equals Positions of the = signs in it that are not in quotes.
+         * @param start Offset of the term in the query.
+         */
+        private void addTerm(StringBuilder term, List<Integer> equals, int start){
+            if (term.length() == 0){
+                return;
+            }
+            String text = term.toString();
+            Tag tag = equals.isEmpty() ? null
+                    : new Tag(text.substring(0, equals.get(0)), text.substring(equals.get(0) + 1));
+            tokens.add(new Token(text, start, true, equals.size(), tag));
+            term.setLength(0);
+            equals.clear();
+        }
+
+        private static boolean isKeyword(String word){
+            return word.equalsIgnoreCase("AND") || word.equalsIgnoreCase("OR") || word.equalsIgnoreCase("NOT");
+        }
+
+        String peek(){
+            return pos < tokens.size() ? tokens.get(pos).text : null;
+        }
+
+        /**
+         * Check if the next token is the given parenthesis or keyword.
+         * @param symbol Parenthesis or keyword, in upper case.
+         * @return True if it is, false elsewise.
+         */
+        boolean at(String symbol){
+            return pos < tokens.size() && !tokens.get(pos).term && tokens.get(pos).text.equals(symbol);
+        }
+
+        ParseException error(String message){
+            int offset = pos < tokens.size() ? tokens.get(pos).offset : -1;
+            return new ParseException(message, offset);
+        }
+
+        TagQuery parseOr() throws ParseException {
+            List<TagQuery> terms = new ArrayList<TagQuery>();
+            terms.add(parseAnd());
+            while (at("OR")){
+                pos++;
+                terms.add(parseAnd());
+            }
+            return terms.size() == 1 ? terms.get(0) : new Or(terms);
+        }
+
+        TagQuery parseAnd() throws ParseException {
+            List<TagQuery> terms = new ArrayList<TagQuery>();
+            terms.add(parseNot());
+            while (at("AND")){
+                pos++;
+                terms.add(parseNot());
+            }
+            return terms.size() == 1 ? terms.get(0) : new And(terms);
+        }
+
+        TagQuery parseNot() throws ParseException {
+            if (at("NOT")){
+                pos++;
+                return new Not(parseNot());
+            }
+            return parsePrimary();
+        }
+
+        TagQuery parsePrimary() throws ParseException {
+            if (pos >= tokens.size()){
+                throw error("Query ended too soon");
+            }
+            Token token = tokens.get(pos);
+            if (at("(")){
+                pos++;
+                TagQuery inner = parseOr();
+                if (!at(")")){
+                    throw error("Missing )");
+                }
+                pos++;
+                return inner;
+            }
+            if (!token.term){
+                throw error("Unexpected " + token.text);
+            }
+            if (token.separators == 0){
+                throw error("Tags must be written as tag=value: " + token.text);
+            }
+            if (token.separators > 1){
+                throw error("Missing and/or between tags: " + token.text);
+            }
+            pos++;
+            return new Term(new Tag(token.tag.name.trim(), token.tag.value.trim()));
+        }
+    }
+}
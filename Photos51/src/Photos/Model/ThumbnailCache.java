@@ -0,0 +1,188 @@
+package Photos.Model;
+
+import javafx.scene.image.Image;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the thumbnails shown in the photo tables, so each photo is only decoded once.
+ * Thumbnails are decoded at thumbnail size in the background, and the least recently
+ * used ones are dropped once there are too many of them.
+ * A thumbnail is found by the path of its photo and the time the photo was last
+ * modified, so a photo that changes on disk gets a new thumbnail.
+ * Thumbnails already in the ThumbnailStore are read from it instead of decoding the photo,
+ * and the others are decoded by the ImageDecoder, so large photos are subsampled.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class ThumbnailCache {
+
+    public static final int thumbnailWidth = 100;
+    private static final int maxThumbnails = 1000;
+
+    private static final LinkedHashMap<String, Image> cache =
+            new LinkedHashMap<String, Image>(16, 0.75f, true){
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Image> eldest){
+                    return size() > maxThumbnails;
+                }
+            };
+
+    /**
+     * Loads thumbnails for load(), newest request first, since that is the one most likely
+     * to still be on screen.
+     */
+    private static final ThreadPoolExecutor loader = new ThreadPoolExecutor(2, 2,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingDeque<Runnable>(){
+                @Override
+                public boolean offer(Runnable task){
+                    return offerFirst(task);
+                }
+            }, r -> {
+                Thread thread = new Thread(r, "thumbnail-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static ThumbnailStore store;
+
+    /**
+     * Set where thumbnails are stored between sessions.
+     * @param thumbnailStore Store to use, or null for none.
+     */
+    static synchronized void setStore(ThumbnailStore thumbnailStore){
+        store = thumbnailStore;
+    }
+
+    /**
+     * Get the thumbnail of a photo. If it is not cached, it is read from the store, or
+     * else starts loading in the background, and shows up once it is done.
+     * @param directory Path of the photo.
+     * @return Thumbnail of the photo.
+     * @throws FileNotFoundException If the photo is not on the machine.
+     */
+    public static Image get(String directory) throws FileNotFoundException {
+        File file = new File(directory);
+        String key = key(file);
+        synchronized (cache){
+            Image image = cache.get(key);
+            if (image != null){
+                return image;
+            }
+        }
+        // Read the store outside the lock, as load() does, since it reads the disk and
+        // waits for the store's writer.
+        Image image;
+        byte[] stored = store == null ? null : store.read(directory);
+        if (stored != null){
+            image = new Image(new ByteArrayInputStream(stored));
+        }
+        else{
+            image = ImageDecoder.decodeLater(file, thumbnailWidth, 0);
+            if (store != null){
+                store.generateLater(directory);
+            }
+        }
+        synchronized (cache){
+            // Another thread may have cached it in the meantime.
+            Image cached = cache.get(key);
+            if (cached != null){
+                return cached;
+            }
+            cache.put(key, image);
+            return image;
+        }
+    }
+
+    /**
+     * Get the thumbnail of a photo only if it is already cached.
+     * @param directory Path of the photo.
+     * @return Thumbnail, or null if it is not cached or the photo is not on the machine.
+     */
+    public static Image peek(String directory){
+        try {
+            String key = key(new File(directory));
+            synchronized (cache){
+                return cache.get(key);
+            }
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Load the thumbnail of a photo in the background. Unlike get(), nothing is read on
+     * the calling thread, and the load can be cancelled if the thumbnail is no longer
+     * needed before it starts. The newest loads run first.
+     * @param directory Path of the photo.
+     * @param onLoaded Called on the loading thread with the thumbnail, unless the photo
+     *                 could not be read.
+     * @return Load, which can be given to cancel().
+     */
+    public static Future<Image> load(String directory, Consumer<Image> onLoaded){
+        FutureTask<Image> task = new FutureTask<Image>(() -> {
+            File file = new File(directory);
+            String key = key(file);
+            Image image;
+            synchronized (cache){
+                image = cache.get(key);
+            }
+            if (image == null){
+                byte[] stored = store == null ? null : store.read(directory);
+                if (stored != null){
+                    image = new Image(new ByteArrayInputStream(stored));
+                }
+                else{
+                    image = ImageDecoder.decode(file, thumbnailWidth, 0);
+                    if (store != null){
+                        store.generateLater(directory);
+                    }
+                }
+                if (image == null){
+                    return null;
+                }
+                synchronized (cache){
+                    cache.put(key, image);
+                }
+            }
+            onLoaded.accept(image);
+            return image;
+        });
+        loader.execute(task);
+        return task;
+    }
+
+    /**
+     * Cancel a load that is no longer needed. Loads that already started still finish.
+     * @param load Load from load(), or null.
+     */
+    public static void cancel(Future<Image> load){
+        if (load != null && load.cancel(false)){
+            loader.remove((Runnable) load);
+        }
+    }
+
+    /**
+     * Get the key of a thumbnail, which changes when its photo does.
+     * @param file Photo file.
+     * @return Key of the thumbnail.
+     * @throws FileNotFoundException If the photo is not on the machine.
+     */
+    private static String key(File file) throws FileNotFoundException {
+        long lastModified = file.lastModified();
+        if (lastModified == 0 && !file.exists()){
+            throw new FileNotFoundException(file.getPath());
+        }
+        return file.getPath() + "@" + lastModified;
+    }
+}
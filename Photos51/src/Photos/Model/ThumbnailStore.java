@@ -0,0 +1,327 @@
+package Photos.Model;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps small, pre-scaled copies of the photos in a single file next to the database,
+ * so the photo tables do not have to decode the originals every time the app starts.
+ * Each thumbnail is stored as a JPEG, together with the path, size and last modified time
+ * of its photo. A thumbnail whose photo has changed since is ignored and made again.
+ * New thumbnails are made on a background thread and appended to the end of the file.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class ThumbnailStore {
+
+    private static final byte[] magic = {'P', 'H', 'T', 'B'};
+    private static final int version = 1;
+    private static final long compactThreshold = 1 << 20;
+
+    /**
+     * Where a thumbnail is in the file, and which version of its photo it was made from.
+     */
+    private static class Entry {
+        final long size;
+        final long lastModified;
+        final long offset;
+        final int length;
+        final int recordLength;
+
+        Entry(long size, long lastModified, long offset, int length, int recordLength){
+            this.size = size;
+            this.lastModified = lastModified;
+            this.offset = offset;
+            this.length = length;
+            this.recordLength = recordLength;
+        }
+
+        boolean matches(File photo){
+            return photo.length() == size && photo.lastModified() == lastModified;
+        }
+    }
+
+    private final File file;
+    private final HashMap<String, Entry> entries;
+    private final HashSet<String> queued;
+    private final ExecutorService writer;
+    private RandomAccessFile data;
+    private long deadBytes;
+
+    /**
+     * Open the thumbnail store in the given file, creating it if needed.
+     * If the file cannot be opened, thumbnails are simply not stored.
+     * @param file Thumbnail file.
+     */
+    public ThumbnailStore(File file){
+        this.file = file;
+        entries = new HashMap<String, Entry>();
+        queued = new HashSet<String>();
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "thumbnail-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            open();
+        } catch (IOException e) {
+            data = null;
+        }
+    }
+
+    /**
+     * Get the stored thumbnail of a photo, if it is up to date.
+     * @param directory Path of the photo.
+     * @return JPEG bytes of the thumbnail, or null if there is none.
+     */
+    public synchronized byte[] read(String directory){
+        Entry entry = entries.get(directory);
+        if (data == null || entry == null || !entry.matches(new File(directory))){
+            return null;
+        }
+        byte[] bytes = new byte[entry.length];
+        try {
+            data.seek(entry.offset);
+            data.readFully(bytes);
+        } catch (IOException e) {
+            return null;
+        }
+        return bytes;
+    }
+
+    /**
+     * Make the thumbnail of a photo in the background, unless an up to date one is
+     * already stored.
+     * @param directory Path of the photo.
+     */
+    public synchronized void generateLater(String directory){
+        if (data == null){
+            return;
+        }
+        Entry entry = entries.get(directory);
+        if (entry != null && entry.matches(new File(directory))){
+            return;
+        }
+        if (queued.add(directory)){
+            writer.execute(() -> generate(directory));
+        }
+    }
+
+    /**
+     * Make the thumbnail of a photo and add it to the file.
+     * @param directory Path of the photo.
+     */
+    private void generate(String directory){
+        File photo = new File(directory);
+        long size = photo.length();
+        long lastModified = photo.lastModified();
+        byte[] bytes = null;
+        try {
+            bytes = scale(photo, ThumbnailCache.thumbnailWidth);
+        } catch (IOException | RuntimeException e) {
+            // Leave this photo without a stored thumbnail.
+        }
+        synchronized (this){
+            queued.remove(directory);
+            if (bytes == null || data == null){
+                return;
+            }
+            try {
+                append(directory, size, lastModified, bytes);
+            } catch (IOException e) {
+                // The entry was not added, so the thumbnail will just be made again later.
+            }
+        }
+    }
+
+    /**
+     * Decode a photo at roughly the given width and encode it as a JPEG.
+     * Large photos are subsampled while they are read, so the full image is never decoded.
+     * @param photo Photo file.
+     * @param width Width of the thumbnail.
+     * @return JPEG bytes, or null if the photo could not be read.
+     * @throws IOException
+     */
+    static byte[] scale(File photo, int width) throws IOException {
+        // Read at twice the thumbnail width, so scaling down to it still looks smooth.
+        // The thumbnail is made while the decoded photo still counts against the budget.
+        BufferedImage thumbnail = ImageDecoder.read(photo, width * 2, 0, source -> {
+            int height = Math.max(1, Math.round((float) source.getHeight() * width / source.getWidth()));
+            BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = scaled.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+            g.dispose();
+            return scaled;
+        });
+        if (thumbnail == null){
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(thumbnail, "jpg", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Read the index of the file, or start a new file if it is missing or unreadable.
+     * A record that was only partly written ends the index and is cut off.
+     * @throws IOException
+     */
+    private void open() throws IOException {
+        data = new RandomAccessFile(file, "rw");
+        byte[] header = new byte[magic.length + 1];
+        if (data.length() < header.length){
+            reset();
+            return;
+        }
+        data.readFully(header);
+        for (int i = 0; i < magic.length; i++){
+            if (header[i] != magic[i]){
+                reset();
+                return;
+            }
+        }
+        if (header[magic.length] != version){
+            reset();
+            return;
+        }
+        long liveBytes = 0;
+        long end = header.length;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            in.skipBytes(header.length);
+            while (end < data.length()){
+                String directory = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                int length = in.readInt();
+                int recordLength = utfLength(directory) + 8 + 8 + 4 + length;
+                if (length < 0 || end + recordLength > data.length()){
+                    break;
+                }
+                in.skipBytes(length);
+                Entry entry = new Entry(size, lastModified, end + recordLength - length, length, recordLength);
+                Entry old = entries.put(directory, entry);
+                if (old != null){
+                    deadBytes += old.recordLength;
+                    liveBytes -= old.recordLength;
+                }
+                liveBytes += recordLength;
+                end += recordLength;
+            }
+        } catch (IOException e) {
+            // Torn record at the end of the file.
+        }
+        data.setLength(end);
+        if (deadBytes > compactThreshold && deadBytes > liveBytes){
+            compact();
+        }
+    }
+
+    /**
+     * Get the number of bytes writeUTF uses for a string.
+     * @param s String to write.
+     * @return Number of bytes, including the length before the string.
+     */
+    private static int utfLength(String s){
+        int length = 2;
+        for (int i = 0; i < s.length(); i++){
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F){
+                length += 1;
+            }
+            else if (c <= 0x07FF){
+                length += 2;
+            }
+            else{
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Empty the file and write a new header.
+     * @throws IOException
+     */
+    private void reset() throws IOException {
+        entries.clear();
+        deadBytes = 0;
+        data.setLength(0);
+        data.write(magic);
+        data.write(version);
+    }
+
+    /**
+     * Add a thumbnail to the end of the file.
+     * @param directory Path of the photo.
+     * @param size Size of the photo.
+     * @param lastModified Last modified time of the photo.
+     * @param bytes JPEG bytes of the thumbnail.
+     * @throws IOException
+     */
+    private void append(String directory, long size, long lastModified, byte[] bytes) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(record);
+        out.writeUTF(directory);
+        out.writeLong(size);
+        out.writeLong(lastModified);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        long offset = data.length();
+        data.seek(offset);
+        data.write(record.toByteArray());
+        Entry old = entries.put(directory, new Entry(size, lastModified,
+                offset + record.size() - bytes.length, bytes.length, record.size()));
+        if (old != null){
+            deadBytes += old.recordLength;
+        }
+    }
+
+    /**
+     * Rewrite the file with only the newest thumbnail of each photo.
+     * @throws IOException
+     */
+    private void compact() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        HashMap<String, Entry> compacted = new HashMap<String, Entry>();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))){
+            out.write(magic);
+            out.write(version);
+            long offset = magic.length + 1;
+            for (Map.Entry<String, Entry> e : entries.entrySet()){
+                Entry entry = e.getValue();
+                byte[] bytes = new byte[entry.length];
+                data.seek(entry.offset);
+                data.readFully(bytes);
+                out.writeUTF(e.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.lastModified);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                compacted.put(e.getKey(), new Entry(entry.size, entry.lastModified,
+                        offset + entry.recordLength - entry.length, entry.length, entry.recordLength));
+                offset += entry.recordLength;
+            }
+        }
+        data.close();
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        data = new RandomAccessFile(file, "rw");
+        entries.clear();
+        entries.putAll(compacted);
+        deadBytes = 0;
+    }
+}
@@ -0,0 +1,268 @@
+package Photos.Model;
+
+import javafx.scene.image.Image;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a photo in square tiles for the zoomed in view, so only the part of the photo
+ * that is on screen is ever decoded, at the detail the zoom level needs.
+ * Each zoom level halves the detail of the one before it: level 0 is the photo at full
+ * size, and level n skips all but every 2^n-th row and column. A tile is read with a
+ * source region, so the rest of the photo is never held in memory.
+ * The least recently used tiles are dropped once there are too many. How many to keep
+ * follows the size of the view, so a big window never drops tiles it is showing to make
+ * room for others it is showing. Tiles around the ones on screen are loaded too, so
+ * panning shows them right away, and tiles that are no longer needed are taken off the
+ * queue before they are loaded.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class TileLoader {
+
+    public static final int tileSize = 256;
+    private static final int minTiles = 96;
+
+    private static final ThreadPoolExecutor tileReader = new ThreadPoolExecutor(2, 2,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), r -> {
+                Thread thread = new Thread(r, "tile-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final File file;
+    private final int width;
+    private final int height;
+    private final LinkedHashMap<Long, Image> tiles;
+    private final LinkedHashMap<Long, FutureTask<Image>> loading;
+    private volatile Runnable listener;
+
+    /**
+     * Number of tiles to keep: twice the tiles on screen and around it, so the tiles of
+     * the last view are still there when panning back.
+     */
+    private int maxTiles = minTiles;
+
+    /**
+     * Constructor for the tiles of one photo.
+     * @param file Photo file.
+     * @param width Width of the photo.
+     * @param height Height of the photo.
+     */
+    private TileLoader(File file, int width, int height){
+        this.file = file;
+        this.width = width;
+        this.height = height;
+        tiles = new LinkedHashMap<Long, Image>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Image> eldest){
+                return size() > maxTiles;
+            }
+        };
+        loading = new LinkedHashMap<Long, FutureTask<Image>>();
+    }
+
+    /**
+     * Open a photo to load tiles of. Only its header is read.
+     * @param photo Photo to open.
+     * @return Loader for the photo, or null if the photo cannot be read in tiles.
+     * @throws IOException If the photo could not be read.
+     */
+    public static TileLoader open(Photo photo) throws IOException {
+        File file = new File(photo.getDirectory());
+        int[] size = ImageDecoder.readSize(file);
+        return size == null ? null : new TileLoader(file, size[0], size[1]);
+    }
+
+    /**
+     * Get the width of the photo.
+     * @return Width at full size.
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Get the height of the photo.
+     * @return Height at full size.
+     */
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Set what to call whenever a tile finishes loading, such as redrawing the view.
+     * @param onLoaded Called on the loading thread, or null for nothing.
+     */
+    public void setListener(Runnable onLoaded){
+        listener = onLoaded;
+    }
+
+    /**
+     * Get the zoom level to read tiles at for the given scale, which is the most detailed
+     * level that still has at least one pixel per pixel on screen.
+     * @param scale Pixels on screen per pixel of the photo.
+     * @return Zoom level.
+     */
+    public static int levelFor(double scale){
+        int level = 0;
+        while (level < 30 && scale * (2 << level) <= 1){
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Get the number of pixels of the photo that one tile covers across at a level.
+     * @param level Zoom level.
+     * @return Width and height of the tile in the photo.
+     */
+    public static int span(int level){
+        return tileSize << level;
+    }
+
+    /**
+     * Get a tile if it is loaded.
+     * @param level Zoom level.
+     * @param col Column of the tile.
+     * @param row Row of the tile.
+     * @return Tile, or null if it is not loaded.
+     */
+    public synchronized Image get(int level, int col, int row){
+        return tiles.get(key(level, col, row));
+    }
+
+    /**
+     * Load the tiles shown on screen, and the ring of tiles around them. Tiles on screen
+     * are loaded first, and any tiles still waiting from before that are not in either are
+     * cancelled.
+     * @param level Zoom level.
+     * @param firstCol First column on screen.
+     * @param firstRow First row on screen.
+     * @param lastCol Last column on screen.
+     * @param lastRow Last row on screen.
+     * @param ring Number of tiles around the screen to load.
+     */
+    public synchronized void request(int level, int firstCol, int firstRow, int lastCol, int lastRow, int ring){
+        int span = span(level);
+        int cols = (width + span - 1) / span;
+        int rows = (height + span - 1) / span;
+        LinkedHashSet<Long> wanted = new LinkedHashSet<Long>();
+        for (int r = 0; r <= ring; r++){
+            for (int row = firstRow - r; row <= lastRow + r; row++){
+                for (int col = firstCol - r; col <= lastCol + r; col++){
+                    if (row >= 0 && col >= 0 && row < rows && col < cols){
+                        wanted.add(key(level, col, row));
+                    }
+                }
+            }
+        }
+
+        // Make room for every tile of this view, and drop the oldest tiles if it is smaller.
+        // The tiles of this view are used first, so they are the last to be dropped.
+        for (long key : wanted){
+            tiles.get(key);
+        }
+        maxTiles = Math.max(minTiles, wanted.size() * 2);
+        Iterator<Long> eldest = tiles.keySet().iterator();
+        while (tiles.size() > maxTiles){
+            eldest.next();
+            eldest.remove();
+        }
+
+        // Take everything still waiting off the queue, so it can be queued in the new order.
+        HashSet<Long> waiting = new HashSet<Long>();
+        Iterator<Map.Entry<Long, FutureTask<Image>>> it = loading.entrySet().iterator();
+        while (it.hasNext()){
+            Map.Entry<Long, FutureTask<Image>> entry = it.next();
+            if (tileReader.remove(entry.getValue())){
+                if (wanted.contains(entry.getKey())){
+                    waiting.add(entry.getKey());
+                }
+                else{
+                    entry.getValue().cancel(false);
+                    it.remove();
+                }
+            }
+        }
+
+        for (long key : wanted){
+            if (waiting.contains(key)){
+                tileReader.execute(loading.get(key));
+            }
+            else if (!tiles.containsKey(key) && !loading.containsKey(key)){
+                FutureTask<Image> task = load(key);
+                loading.put(key, task);
+                tileReader.execute(task);
+            }
+        }
+    }
+
+    /**
+     * Stop loading tiles and forget the loaded ones, such as when the view is closed.
+     */
+    public synchronized void close(){
+        listener = null;
+        for (FutureTask<Image> task : loading.values()){
+            task.cancel(false);
+            tileReader.remove(task);
+        }
+        loading.clear();
+        tiles.clear();
+    }
+
+    /**
+     * Make the task that loads a tile.
+     * @param key Key of the tile.
+     * @return Task, which has not been queued yet.
+     */
+    private FutureTask<Image> load(long key){
+        int level = (int) (key >>> 58);
+        int col = (int) ((key >>> 29) & 0x1FFFFFFF);
+        int row = (int) (key & 0x1FFFFFFF);
+        int span = span(level);
+        int x = col * span;
+        int y = row * span;
+        return new FutureTask<Image>(() -> {
+            Image tile = null;
+            try {
+                tile = ImageDecoder.decodeRegion(file, x, y,
+                        Math.min(span, width - x), Math.min(span, height - y), 1 << level);
+            } catch (IOException | RuntimeException e) {
+                // Leave the tile out, so the view keeps showing the photo behind it.
+            }
+            synchronized (TileLoader.this){
+                loading.remove(key);
+                if (tile != null){
+                    tiles.put(key, tile);
+                }
+            }
+            Runnable onLoaded = listener;
+            if (tile != null && onLoaded != null){
+                onLoaded.run();
+            }
+            return tile;
+        });
+    }
+
+    /**
+     * Pack a tile's level and place into one key.
+     * @param level Zoom level.
+     * @param col Column of the tile.
+     * @param row Row of the tile.
+     * @return Key of the tile.
+     */
+    private static long key(int level, int col, int row){
+        return ((long) level << 58) | ((long) col << 29) | row;
+    }
+}
@@ -1,8 +1,12 @@
 package Photos.Model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -18,6 +22,41 @@ public class User implements Serializable {
     private String password;
     private List<Album> albums;
     private List<Tag> createdTags;
+    private long nextPhotoId = 1;
+    private transient DatabaseReader.UserSegment segment;
+    private transient boolean loaded;
+
+    /**
+     * Albums by name, built the first time an album is looked up and kept in sync by
+     * addAlbum, removeAlbum and renameAlbum.
+     */
+    private transient HashMap<String, Album> albumIndex;
+
+    /**
+     * Every photo this user owns by its ID, with the number of places in their albums that
+     * hold it. A photo in several albums is one record shared by all of them. Built the
+     * first time it is needed and kept in sync by the Database as photos are added and
+     * removed. The tag and date indexes are only built on top of it.
+     */
+    private transient PhotoStore library;
+
+    /**
+     * IDs of the tag names and values used by this user's photos. Made the first time
+     * it is needed, and never replaced, since the photos refer to it.
+     */
+    private transient TagDictionary tagDictionary;
+
+    /**
+     * Photos by tag, built the first time the user searches by tag and kept in sync by
+     * the Database as photos and tags are added and removed.
+     */
+    private transient TagIndex tagIndex;
+
+    /**
+     * Photos by the time they were modified, built the first time the user searches by
+     * date and kept in sync the same way as the tag index.
+     */
+    private transient DateIndex dateIndex;
 
     /**
      * Constructor for this user.
@@ -28,44 +67,360 @@ public class User implements Serializable {
         this.username = username;
         this.password = password;
         albums = new ArrayList<Album>();
+        createdTags = presetTags();
+    }
 
+    /**
+     * Make the tags every user starts with.
+     * @return List of preset tags.
+     */
+    private static List<Tag> presetTags(){
         // Set the tags for users to have.
-        createdTags = new ArrayList<Tag>();
+        List<Tag> tags = new ArrayList<Tag>();
         Tag tag1 = new Tag("location", "", false);
         Tag tag2 = new Tag("people", "", true);
         Tag tag3 = new Tag("mood", "", true);
         Tag tag4 = new Tag(Tag.custom, "", false);
-        createdTags.add(tag4);
-        createdTags.add(tag1);
-        createdTags.add(tag2);
-        createdTags.add(tag3);
-
+        tags.add(tag4);
+        tags.add(tag1);
+        tags.add(tag2);
+        tags.add(tag3);
+        return tags;
     }
 
     /**
      * Get this user's albums, if any.
-     * @return ArrayList of Albums, which can be empty, or have Albums
+     * Use addAlbum, removeAlbum and renameAlbum to change them.
+     * @return Read-only list of Albums, which can be empty, or have Albums
      * in it.
      */
     public List<Album> getAlbums(){
-        return albums;
+        load();
+        return Collections.unmodifiableList(albums);
     }
 
+    /**
+     * Get one of this user's albums by its name.
+     * @param albumName Name of the album.
+     * @return Album found, or null.
+     */
     public Album getAlbumByName(String albumName){
-        for(Album album : albums) {
-            String name = album.getName();
-            if(albumName.equals(name)) {
-                return album;
+        return getAlbumIndex().get(albumName);
+    }
+
+    /**
+     * Add an album to this user. Does not check for duplicate names.
+     * @param album Album to add.
+     */
+    void addAlbum(Album album){
+        getAlbumIndex().put(album.name, album);
+        albums.add(album);
+        if (library != null){
+            for (Photo photo : album.getPhotos()){
+                photoAdded(photo);
+            }
+        }
+    }
+
+    /**
+     * Remove an album from this user.
+     * @param album Album to remove.
+     */
+    void removeAlbum(Album album){
+        getAlbumIndex().remove(album.name);
+        albums.remove(album);
+        if (library != null){
+            for (Photo photo : album.getPhotos()){
+                photoRemoved(photo);
             }
         }
-        return null;
     }
+
+    /**
+     * Rename one of this user's albums. Does not check for duplicate names.
+     * @param album Album to rename.
+     * @param name New name of the album.
+     */
+    void renameAlbum(Album album, String name){
+        HashMap<String, Album> index = getAlbumIndex();
+        index.remove(album.name);
+        album.setName(name);
+        index.put(name, album);
+    }
+
+    /**
+     * Get the index of albums by name, building it if needed.
+     * @return Album index.
+     */
+    private HashMap<String, Album> getAlbumIndex(){
+        load();
+        if (albumIndex == null){
+            albumIndex = new HashMap<String, Album>(albums.size() * 2);
+            for (Album album : albums){
+                albumIndex.put(album.name, album);
+            }
+        }
+        return albumIndex;
+    }
+
+    /**
+     * Get every photo this user owns. A photo that is in several albums is only listed once.
+     * @return List of photos, in the order they were first added.
+     */
+    public List<Photo> getPhotos(){
+        PhotoStore store = getLibrary();
+        return store.get(store.ids());
+    }
+
+    /**
+     * Get the photos with the given IDs.
+     * @param ids IDs of the photos.
+     * @return List of the photos, in the same order.
+     */
+    List<Photo> getPhotos(long[] ids){
+        return getLibrary().get(ids);
+    }
+
+    /**
+     * Get the IDs of every photo this user owns.
+     * @return Sorted array of IDs.
+     */
+    long[] getPhotoIds(){
+        return getLibrary().ids();
+    }
+
+    /**
+     * Get the number of places in this user's albums that hold a photo.
+     * @param photo Photo in question.
+     * @return Number of places, which is 0 if the user does not own the photo.
+     */
+    int getPhotoCount(Photo photo){
+        return getLibrary().count(photo);
+    }
+
+    /**
+     * Get the photos this user owns, building the store if needed.
+     * @return Photo store.
+     */
+    private PhotoStore getLibrary(){
+        load();
+        if (library == null){
+            library = new PhotoStore();
+            for (Album album : albums){
+                for (Photo photo : album.getPhotos()){
+                    if (library.count(photo) == 0){
+                        assignId(photo);
+                        photo.useDictionary(getTagDictionary());
+                    }
+                    library.add(photo);
+                }
+            }
+        }
+        return library;
+    }
+
+    /**
+     * Get the dictionary of this user's tags, making it if needed.
+     * @return Tag dictionary.
+     */
+    TagDictionary getTagDictionary(){
+        if (tagDictionary == null){
+            tagDictionary = new TagDictionary();
+        }
+        return tagDictionary;
+    }
+
+    /**
+     * Give a photo an ID if it does not have one yet. Photos read from the database
+     * file keep the ID they were saved with.
+     * @param photo Photo in question.
+     */
+    private void assignId(Photo photo){
+        if (photo.getId() == 0){
+            // ID 0 marks an empty slot in the PhotoStore, so it is never handed out.
+            nextPhotoId = Math.max(1, nextPhotoId);
+            photo.setId(nextPhotoId++);
+        }
+    }
+
+    /**
+     * Get the ID the next new photo of this user will get.
+     * @return Next photo ID.
+     */
+    long getNextPhotoId(){
+        return nextPhotoId;
+    }
+
+    /**
+     * Set the ID the next new photo of this user will get. Used when loading the user.
+     * @param nextPhotoId Next photo ID.
+     */
+    void setNextPhotoId(long nextPhotoId){
+        this.nextPhotoId = Math.max(1, nextPhotoId);
+    }
+
+    /**
+     * Read a user saved with Java serialization. Files from before photos had IDs do not
+     * have the next ID, and field initializers do not run here, so it would be left at 0.
+     * @param in Stream to read from.
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        nextPhotoId = Math.max(1, nextPhotoId);
+    }
+
+    /**
+     * Get the index of photos by tag, building it if needed.
+     * @return Tag index.
+     */
+    TagIndex getTagIndex(){
+        PhotoStore store = getLibrary();
+        if (tagIndex == null){
+            tagIndex = new TagIndex(getTagDictionary());
+            for (Photo photo : store.get(store.ids())){
+                tagIndex.addPhoto(photo);
+            }
+        }
+        return tagIndex;
+    }
+
+    /**
+     * Get the index of photos by the time they were modified, building it if needed.
+     * @return Date index.
+     */
+    DateIndex getDateIndex(){
+        PhotoStore store = getLibrary();
+        if (dateIndex == null){
+            dateIndex = new DateIndex(store.get(store.ids()));
+        }
+        return dateIndex;
+    }
+
+    /**
+     * Update the library and indexes after a photo was added to one of this user's albums.
+     * @param photo Photo added.
+     */
+    void photoAdded(Photo photo){
+        if (library == null){
+            return;
+        }
+        if (library.count(photo) == 0){
+            assignId(photo);
+            photo.useDictionary(getTagDictionary());
+        }
+        // The indexes only need to know about photos that are new to the user.
+        if (!library.add(photo)){
+            return;
+        }
+        if (tagIndex != null){
+            tagIndex.addPhoto(photo);
+        }
+        if (dateIndex != null){
+            dateIndex.addPhoto(photo);
+        }
+    }
+
+    /**
+     * Update the library and indexes after a photo was removed from one of this user's albums.
+     * @param photo Photo removed.
+     */
+    void photoRemoved(Photo photo){
+        // The indexes only let go of the photo once no album holds it.
+        if (library == null || !library.remove(photo)){
+            return;
+        }
+        if (tagIndex != null){
+            tagIndex.removePhoto(photo);
+        }
+        if (dateIndex != null){
+            dateIndex.removePhoto(photo);
+        }
+    }
+
+    /**
+     * Update the tag index after a tag was added to one of this user's photos.
+     * @param photo Photo that got the tag.
+     * @param tag Tag added.
+     */
+    void tagAdded(Photo photo, Tag tag){
+        if (tagIndex != null && library.count(photo) > 0){
+            tagIndex.addTag(photo, tag);
+        }
+    }
+
+    /**
+     * Update the tag index after a tag was deleted from one of this user's photos.
+     * @param photo Photo that had the tag.
+     * @param tag Tag deleted.
+     */
+    void tagRemoved(Photo photo, Tag tag){
+        if (tagIndex != null && library.count(photo) > 0){
+            tagIndex.removeTag(photo, tag);
+        }
+    }
+
     /**
      * Set this user's albums and update the numAlbums.
      * @param albums Albums to set.
      */
     public void setAlbums(ArrayList<Album> albums){
+        load();
         this.albums = albums;
+        albumIndex = null;
+        library = null;
+        tagIndex = null;
+        dateIndex = null;
+    }
+
+    /**
+     * Leave this user's albums and preset tags in the database file until they are
+     * first needed.
+     * @param segment Part of the database file that holds them.
+     */
+    void setSegment(DatabaseReader.UserSegment segment){
+        this.segment = segment;
+        loaded = false;
+    }
+
+    /**
+     * Get the part of the database file that holds this user's albums, if it has to be
+     * saved as it is: when the albums were never loaded, or could not all be read.
+     * @return Segment, or null if the user is to be written out again.
+     */
+    DatabaseReader.UserSegment getSegment(){
+        if (segment != null && (!loaded || segment.isDamaged())){
+            return segment;
+        }
+        return null;
+    }
+
+    /**
+     * Check if any of this user's albums could not be read from the database file, so far
+     * as they have been read. Such a user is kept as it is in the file, and cannot be changed.
+     * @return True if the user is read-only, false elsewise.
+     */
+    public boolean isReadOnly(){
+        load();
+        return segment != null && segment.isDamaged();
+    }
+
+    /**
+     * Read this user's albums and preset tags from the database file, if that
+     * has not happened yet. If that part of the file is corrupt, the user is shown with
+     * no albums and the default preset tags, and is read-only.
+     */
+    private void load(){
+        if (segment != null && !loaded){
+            loaded = true;
+            try {
+                segment.load(this);
+            } catch (IOException e) {
+                setAlbums(new ArrayList<Album>());
+                createdTags = presetTags();
+            }
+        }
     }
 
     /**
@@ -92,6 +447,9 @@ public class User implements Serializable {
      * @return Number of albums.
      */
     public int getNumAlbums(){
+        if (segment != null && !loaded){
+            return segment.getNumAlbums();
+        }
         if (albums == null){
             return 0;
         }
@@ -99,12 +457,13 @@ public class User implements Serializable {
     }
 
     public List<Tag> getCreatedTags(){
+        load();
         return createdTags;
     }
 
     public Tag getCreatedTag(String tagName){
-        for (Tag t: createdTags){
-            if (t.sameName(new Tag(tagName, ""))){
+        for (Tag t: getCreatedTags()){
+            if (t.name.equals(tagName)){
                 return t;
             }
         }
@@ -112,6 +471,7 @@ public class User implements Serializable {
     }
 
     public void setCreatedTags(List<Tag> tags){
+        load();
         this.createdTags = tags;
     }
 
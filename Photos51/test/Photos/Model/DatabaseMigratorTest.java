@@ -0,0 +1,81 @@
+package Photos.Model;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests reading database files saved with Java serialization by older versions.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class DatabaseMigratorTest {
+
+    /**
+     * Files from before photos had IDs have no next photo ID, so every user is read back
+     * with it at 0. The first photo of each user must still get an ID other than 0, since
+     * 0 marks an empty slot in the user's photo store.
+     */
+    @Test
+    public void migratedUsersNeverGivePhotoIdZero() throws Exception {
+        User user = new User("april", "password");
+        Album album = new Album("trip");
+        Photo first = new Photo("first.jpg", false);
+        Photo second = new Photo("second.jpg", false);
+        album.addPhoto(first);
+        album.addPhoto(second);
+        user.addAlbum(album);
+        ArrayList<User> users = new ArrayList<User>();
+        users.add(user);
+
+        Database db = DatabaseMigrator.readLegacy(legacyBytes(new Database(users, 0)));
+        db.setUsers(new ArrayList<User>(db.getUsers()));
+        User migrated = db.getUser("april");
+        List<Photo> photos = migrated.getAlbums().get(0).getPhotos();
+
+        HashSet<Long> ids = new HashSet<Long>();
+        for (Photo photo : photos){
+            assertEquals(1, migrated.getPhotoCount(photo));
+            assertNotEquals(0, photo.getId());
+            ids.add(photo.getId());
+        }
+        assertEquals(2, ids.size());
+        assertEquals(2, migrated.getPhotos().size());
+
+        GregorianCalendar start = new GregorianCalendar(1900, 0, 1);
+        GregorianCalendar finish = new GregorianCalendar(2200, 0, 1);
+        assertEquals(2, db.searchByDate(migrated, start, finish).size());
+        assertNotNull(db.getDuplicateFinder(migrated));
+        assertTrue(migrated.getNextPhotoId() > 2);
+    }
+
+    /**
+     * Serialize a database the way older versions did, as if it was saved before photos
+     * had IDs.
+     * @param db Database to save.
+     * @return Contents of the old database file.
+     * @throws IOException
+     */
+    private static byte[] legacyBytes(Database db) throws IOException, ReflectiveOperationException {
+        // Older files do not have the field at all, which reads back the same as 0.
+        Field nextPhotoId = User.class.getDeclaredField("nextPhotoId");
+        nextPhotoId.setAccessible(true);
+        for (User user : db.getUsers()){
+            nextPhotoId.setLong(user, 0);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)){
+            out.writeObject(db);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,125 @@
+package Photos.Model;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests reading database files that are corrupt past the directory of users, where the
+ * damage is only found when a user or album is first used.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class DatabaseReaderTest {
+
+    /**
+     * A user whose segment is corrupt is shown with no albums instead of throwing, cannot
+     * be changed, and is saved again exactly as it was read.
+     */
+    @Test
+    public void corruptSegmentIsKeptAndReadOnly() throws IOException {
+        byte[] bytes = write();
+        int segmentLength = read(bytes).getSegment().getBytes().length;
+        // The first number in the segment is the size of its string table.
+        Arrays.fill(bytes, bytes.length - segmentLength, bytes.length - segmentLength + 4, (byte) 0xFF);
+
+        User user = read(bytes);
+        assertTrue(user.getAlbums().isEmpty());
+        assertFalse(user.getCreatedTags().isEmpty());
+        assertTrue(user.getPhotos().isEmpty());
+        assertTrue(user.isReadOnly());
+        assertKept(bytes, user);
+    }
+
+    /**
+     * An album whose photos are corrupt is shown empty instead of throwing, its user
+     * cannot be changed, and the user is saved again exactly as it was read.
+     */
+    @Test
+    public void corruptPhotoBlockIsKeptAndReadOnly() throws IOException {
+        byte[] bytes = write();
+        // The album's block is last in the file, and holds the photo's index in the table
+        // as one byte. Point it past the end of the table.
+        bytes[bytes.length - 1] = 0x7F;
+
+        User user = read(bytes);
+        assertEquals(1, user.getAlbums().size());
+        assertFalse(user.isReadOnly());
+        assertTrue(user.getAlbums().get(0).getPhotos().isEmpty());
+        assertTrue(user.isReadOnly());
+        assertKept(bytes, user);
+    }
+
+    /**
+     * A user that could be read is written out again, so their changes are saved.
+     */
+    @Test
+    public void loadedUserIsWrittenAgain() throws IOException {
+        User user = read(write());
+        Database db = database(user);
+        assertEquals(DBStatus.SUCCESS, db.renameAlbum(user, user.getAlbums().get(0), "holiday"));
+        assertFalse(user.isReadOnly());
+
+        User saved = read(DatabaseWriter.write(db.getUsers(), 0));
+        assertEquals("holiday", saved.getAlbums().get(0).getName());
+        assertEquals(1, saved.getAlbums().get(0).getPhotos().size());
+    }
+
+    /**
+     * Check that a read-only user refuses changes, and is saved with the same bytes it
+     * was read from.
+     * @param bytes Encoded database the user was read from.
+     * @param user User read from it.
+     */
+    private static void assertKept(byte[] bytes, User user){
+        Database db = database(user);
+        assertEquals(DBStatus.READ_ONLY, db.addAlbum(user, new Album("more")));
+        assertEquals(DBStatus.READ_ONLY, db.addCreatedTag(user, new Tag("weather", "")));
+        assertTrue(Arrays.equals(bytes, DatabaseWriter.write(db.getUsers(), 0)));
+    }
+
+    /**
+     * Make a database holding only the given user.
+     * @param user User to hold.
+     * @return Database.
+     */
+    private static Database database(User user){
+        ArrayList<User> users = new ArrayList<User>(Collections.singletonList(user));
+        Database db = new Database(users, 0);
+        db.setUsers(users);
+        return db;
+    }
+
+    /**
+     * Encode a database with one user, who has one album with one photo.
+     * @return Encoded database.
+     * @throws IOException
+     */
+    private static byte[] write() throws IOException {
+        User user = new User("april", "password");
+        Album album = new Album("trip");
+        album.addPhoto(new Photo("trip.jpg", false));
+        user.addAlbum(album);
+        ArrayList<User> users = new ArrayList<User>();
+        users.add(user);
+        return DatabaseWriter.write(users, 0);
+    }
+
+    /**
+     * Read the directory of an encoded database, leaving the user's segment unread.
+     * @param bytes Encoded database.
+     * @return The user in it.
+     * @throws IOException
+     */
+    private static User read(byte[] bytes) throws IOException {
+        DatabaseReader reader = new DatabaseReader(ByteBuffer.wrap(bytes));
+        reader.read();
+        return reader.getUsers().get(0);
+    }
+}
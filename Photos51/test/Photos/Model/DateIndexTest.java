@@ -0,0 +1,50 @@
+package Photos.Model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the index of a user's photos by the time they were modified.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class DateIndexTest {
+
+    /**
+     * An index built from all the photos at once finds the same photos, in the same
+     * order, as one the photos were added to one at a time.
+     */
+    @Test
+    public void builtIndexMatchesAddedPhotos() throws Exception {
+        List<Photo> photos = new ArrayList<Photo>();
+        for (int i = 0; i < 500; i++){
+            Photo photo = new Photo("photo" + i + ".jpg", false);
+            photo.setId(i + 1);
+            // Plenty of photos share a time, to check their order.
+            photo.dateModified = new GregorianCalendar(2000 + (i * 7919) % 23, 0, 1);
+            photos.add(photo);
+        }
+        DateIndex built = new DateIndex(photos);
+        DateIndex added = new DateIndex(new ArrayList<Photo>());
+        for (Photo photo : photos){
+            added.addPhoto(photo);
+        }
+
+        for (int year = 1999; year < 2025; year++){
+            long start = new GregorianCalendar(year, 0, 1).getTimeInMillis();
+            long end = new GregorianCalendar(year + 3, 0, 2).getTimeInMillis();
+            assertTrue(Arrays.equals(added.between(start, end), built.between(start, end)));
+        }
+        assertEquals(500, built.between(Long.MIN_VALUE, Long.MAX_VALUE).length);
+
+        built.removePhoto(photos.get(0));
+        built.addPhoto(photos.get(0));
+        assertEquals(500, built.between(Long.MIN_VALUE, Long.MAX_VALUE).length);
+    }
+}
@@ -0,0 +1,69 @@
+package Photos.Model;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests finding photos that are already in a user's library.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class DuplicateFinderTest {
+
+    /**
+     * Copies of the same file checked at the same time, as the workers of an import do,
+     * must leave exactly one of them new and match the rest to it.
+     */
+    @Test
+    public void findOrAddKeepsOneOfManyCopies() throws Exception {
+        Path folder = Files.createTempDirectory("duplicates");
+        byte[] contents = new byte[100000];
+        for (int i = 0; i < contents.length; i++){
+            contents[i] = (byte) i;
+        }
+        List<Photo> copies = new ArrayList<Photo>();
+        for (int i = 0; i < 8; i++){
+            Path copy = folder.resolve("copy" + i + ".jpg");
+            Files.write(copy, contents);
+            copies.add(new Photo(copy.toString(), false));
+        }
+
+        DuplicateFinder finder = new DuplicateFinder(Collections.<Photo>emptySet());
+        ExecutorService pool = Executors.newFixedThreadPool(copies.size());
+        List<Future<Photo>> found = new ArrayList<Future<Photo>>();
+        for (Photo copy : copies){
+            found.add(pool.submit((Callable<Photo>) () -> finder.findOrAdd(copy)));
+        }
+        Photo kept = null;
+        int added = 0;
+        for (int i = 0; i < copies.size(); i++){
+            if (found.get(i).get() == null){
+                added++;
+                kept = copies.get(i);
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(1, added);
+        for (Future<Photo> match : found){
+            assertTrue(match.get() == null || match.get() == kept);
+        }
+        assertTrue(finder.find(copies.get(0)) == kept);
+        for (File file : folder.toFile().listFiles()){
+            file.delete();
+        }
+        folder.toFile().delete();
+    }
+}
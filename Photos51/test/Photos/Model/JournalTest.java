@@ -0,0 +1,107 @@
+package Photos.Model;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests writing and reading back the database journal.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class JournalTest {
+
+    /**
+     * A record that cannot be encoded must be left out whole, so the records after it
+     * can still be read back.
+     */
+    @Test
+    public void recordTooLongToEncodeDoesNotHideLaterRecords() throws IOException {
+        File file = File.createTempFile("database", ".journal");
+        try {
+            Journal journal = new Journal(file);
+            char[] caption = new char[70000];
+            Arrays.fill(caption, 'a');
+
+            journal.append(1, Journal.Op.ADD_USER, "april", "password");
+            try {
+                journal.append(2, Journal.Op.SET_CAPTION, "april", "trip", "0", new String(caption));
+                fail("A 70,000 character caption should not fit in a record.");
+            } catch (IOException e) {
+                // Expected.
+            }
+            journal.append(3, Journal.Op.ADD_ALBUM, "april", "trip");
+            journal.append(4, Journal.Op.RENAME_ALBUM, "april", "trip", "vacation");
+            journal.write();
+
+            List<Journal.Record> records = Journal.read(file);
+            assertEquals(3, records.size());
+            assertEquals(1, records.get(0).seq);
+            assertEquals(3, records.get(1).seq);
+            assertEquals(4, records.get(2).seq);
+            assertEquals("vacation", records.get(2).args[2]);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Replaying the journal over the snapshot it was written after brings back every
+     * change made since, skips the ones already in the snapshot, and skips changes that
+     * no longer apply without stopping.
+     */
+    @Test
+    public void replayAppliesChangesAfterTheSnapshot() throws IOException {
+        File file = File.createTempFile("database", ".journal");
+        try {
+            Journal journal = new Journal(file);
+            // Already in the snapshot, so not applied again.
+            journal.append(1, Journal.Op.ADD_USER, "april", "password");
+            journal.append(2, Journal.Op.ADD_ALBUM, "april", "old");
+            // Made since.
+            journal.append(3, Journal.Op.ADD_ALBUM, "april", "trip");
+            journal.append(4, Journal.Op.ADD_PHOTO, "april", "trip", "beach.jpg", "");
+            journal.append(5, Journal.Op.ADD_PHOTO, "april", "trip", "hotel.jpg", "");
+            journal.append(6, Journal.Op.SET_CAPTION, "april", "trip", "0", "Sunset");
+            journal.append(7, Journal.Op.ADD_TAG, "april", "trip", "0", "location", "beach", "false");
+            journal.append(8, Journal.Op.ADD_ALBUM, "april", "best");
+            journal.append(9, Journal.Op.LINK_PHOTO, "april", "best", "trip", "0");
+            journal.append(10, Journal.Op.DELETE_PHOTO, "april", "trip", "1");
+            journal.append(11, Journal.Op.RENAME_ALBUM, "april", "trip", "vacation");
+            journal.append(12, Journal.Op.SET_CAPTION, "april", "missing", "0", "Lost");
+            journal.append(13, Journal.Op.ADD_CREATED_TAG, "april", "weather", "", "true");
+            journal.write();
+
+            // If the records in the snapshot were replayed, this user would get the old album.
+            User user = new User("april", "password");
+            ArrayList<User> users = new ArrayList<User>();
+            users.add(user);
+            Database db = new Database(users, 2);
+            db.setUsers(users);
+            db.replayJournal(Journal.read(file));
+
+            assertEquals(2, user.getAlbums().size());
+            assertNull(user.getAlbumByName("old"));
+            assertNull(user.getAlbumByName("trip"));
+            List<Photo> vacation = user.getAlbumByName("vacation").getPhotos();
+            assertEquals(1, vacation.size());
+            Photo beach = vacation.get(0);
+            assertEquals("beach.jpg", beach.getDirectory());
+            assertEquals("Sunset", beach.getCaption());
+            assertTrue(beach.hasTag(new Tag("location", "beach")));
+            // The link is the same photo, not a copy.
+            assertTrue(user.getAlbumByName("best").getPhotos().get(0) == beach);
+            assertEquals(2, user.getPhotoCount(beach));
+            assertEquals(1, user.getPhotos().size());
+            assertNotNull(user.getCreatedTag("weather"));
+        } finally {
+            file.delete();
+        }
+    }
+}
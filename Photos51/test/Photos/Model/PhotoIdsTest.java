@@ -0,0 +1,101 @@
+package Photos.Model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the set operations on sorted arrays of photo IDs.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class PhotoIdsTest {
+
+    /**
+     * Small cases, including empty arrays and arrays with nothing in common.
+     */
+    @Test
+    public void smallSets(){
+        long[] a = {1, 3, 5, 7};
+        long[] b = {3, 4, 5, 8};
+        assertIds(PhotoIds.intersect(a, b), 3, 5);
+        assertIds(PhotoIds.union(a, b), 1, 3, 4, 5, 7, 8);
+        assertIds(PhotoIds.difference(a, b), 1, 7);
+        assertIds(PhotoIds.difference(b, a), 4, 8);
+
+        assertIds(PhotoIds.intersect(a, PhotoIds.none));
+        assertIds(PhotoIds.union(PhotoIds.none, b), 3, 4, 5, 8);
+        assertIds(PhotoIds.difference(a, PhotoIds.none), 1, 3, 5, 7);
+        assertIds(PhotoIds.difference(PhotoIds.none, a));
+        assertIds(PhotoIds.intersect(new long[]{2, 6}, a));
+        assertIds(PhotoIds.difference(a, a));
+    }
+
+    /**
+     * Random arrays of very different sizes, so both ways of intersecting are used, give
+     * the same answers as sets do.
+     */
+    @Test
+    public void matchesSets(){
+        Random random = new Random(42);
+        for (int sizeA : new int[]{0, 1, 10, 200}){
+            for (int sizeB : new int[]{0, 5, 100, 5000}){
+                TreeSet<Long> a = randomSet(random, sizeA);
+                TreeSet<Long> b = randomSet(random, sizeB);
+
+                TreeSet<Long> both = new TreeSet<Long>(a);
+                both.retainAll(b);
+                TreeSet<Long> either = new TreeSet<Long>(a);
+                either.addAll(b);
+                TreeSet<Long> onlyA = new TreeSet<Long>(a);
+                onlyA.removeAll(b);
+
+                assertIds(PhotoIds.intersect(toArray(a), toArray(b)), toArray(both));
+                assertIds(PhotoIds.intersect(toArray(b), toArray(a)), toArray(both));
+                assertIds(PhotoIds.union(toArray(a), toArray(b)), toArray(either));
+                assertIds(PhotoIds.difference(toArray(a), toArray(b)), toArray(onlyA));
+            }
+        }
+    }
+
+    /**
+     * Make a set of random IDs.
+     * @param random Source of the IDs.
+     * @param size Number of IDs to draw, some of which may repeat.
+     * @return Set of IDs.
+     */
+    private static TreeSet<Long> randomSet(Random random, int size){
+        TreeSet<Long> set = new TreeSet<Long>();
+        for (int i = 0; i < size; i++){
+            set.add(1 + (long) random.nextInt(10000));
+        }
+        return set;
+    }
+
+    /**
+     * Turn a set of IDs into a sorted array.
+     * @param set Set of IDs.
+     * @return Sorted array.
+     */
+    private static long[] toArray(TreeSet<Long> set){
+        long[] ids = new long[set.size()];
+        int i = 0;
+        for (long id : set){
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Check the IDs found.
+     * @param found IDs found.
+     * @param ids IDs that should be found, in order.
+     */
+    private static void assertIds(long[] found, long... ids){
+        assertTrue(Arrays.toString(found), Arrays.equals(ids, found));
+    }
+}
@@ -0,0 +1,77 @@
+package Photos.Model;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests importing a folder of photos into a user's library.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class PhotoImporterTest {
+
+    /**
+     * The user is asked about duplicates once, and only when there are some.
+     */
+    @Test
+    public void asksOnceAndOnlyForDuplicates() throws Exception {
+        Path folder = Files.createTempDirectory("import");
+        Path library = write(folder, "library.jpg", 1);
+        for (int i = 0; i < 5; i++){
+            write(folder, "copy" + i + ".jpg", 1);
+        }
+        write(folder, "other.jpg", 2);
+
+        DuplicateFinder finder = new DuplicateFinder(Collections.singleton(new Photo(library.toString())));
+        List<Path> paths = PhotoImporter.findPhotos(folder);
+        paths.remove(library.toAbsolutePath());
+        AtomicInteger asked = new AtomicInteger();
+        PhotoImporter importer = new PhotoImporter(paths);
+        importer.setDuplicates(finder, () -> {
+            asked.incrementAndGet();
+            return PhotoImporter.Duplicates.SKIP;
+        });
+        List<Photo> imported = new ArrayList<Photo>();
+        assertEquals(1, importer.importAll(imported::addAll, done -> { }));
+        assertEquals(1, asked.get());
+        assertTrue(imported.get(0).getDirectory().endsWith("other.jpg"));
+
+        // Nothing left to ask about.
+        PhotoImporter again = new PhotoImporter(Collections.singletonList(folder.resolve("other.jpg")));
+        again.setDuplicates(new DuplicateFinder(Collections.<Photo>emptySet()), () -> {
+            asked.incrementAndGet();
+            return PhotoImporter.Duplicates.SKIP;
+        });
+        assertEquals(1, again.importAll(batch -> { }, done -> { }));
+        assertEquals(1, asked.get());
+
+        for (File file : folder.toFile().listFiles()){
+            file.delete();
+        }
+        folder.toFile().delete();
+    }
+
+    /**
+     * Write a file filled with one byte value.
+     * @param folder Folder to write it in.
+     * @param name File name.
+     * @param fill Byte value.
+     * @return Path of the file.
+     * @throws Exception
+     */
+    private static Path write(Path folder, String name, int fill) throws Exception {
+        byte[] contents = new byte[50000];
+        Arrays.fill(contents, (byte) fill);
+        return Files.write(folder.resolve(name), contents);
+    }
+}
@@ -0,0 +1,113 @@
+package Photos.Model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the table of a user's photos by their ID.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class PhotoStoreTest {
+
+    /**
+     * A photo held by several places is only dropped once none of them hold it.
+     */
+    @Test
+    public void countsPlaces(){
+        PhotoStore store = new PhotoStore();
+        Photo photo = photo(1);
+        assertTrue(store.add(photo));
+        assertFalse(store.add(photo));
+        assertEquals(2, store.count(photo));
+        assertEquals(1, store.size());
+        // Another photo with the same ID is not this one.
+        assertEquals(0, store.count(photo(1)));
+        assertFalse(store.remove(photo(1)));
+
+        assertFalse(store.remove(photo));
+        assertEquals(1, store.count(photo));
+        assertTrue(store.remove(photo));
+        assertEquals(0, store.count(photo));
+        assertNull(store.get(1));
+        assertEquals(0, store.size());
+    }
+
+    /**
+     * Every photo can still be found while the table grows, and after others are
+     * removed from the middle of a run of slots.
+     */
+    @Test
+    public void findsPhotosAfterGrowingAndRemoving(){
+        PhotoStore store = new PhotoStore();
+        List<Photo> photos = new ArrayList<Photo>();
+        for (int id = 1; id <= 2000; id++){
+            Photo photo = photo(id);
+            photos.add(photo);
+            assertTrue(store.add(photo));
+            // Check the photos added so far after each time the table grows.
+            if (Integer.bitCount(id) == 1){
+                assertFound(store, photos);
+            }
+        }
+        assertFound(store, photos);
+
+        Collections.shuffle(photos, new Random(42));
+        List<Photo> removed = new ArrayList<Photo>(photos.subList(0, 1500));
+        List<Photo> kept = new ArrayList<Photo>(photos.subList(1500, photos.size()));
+        for (int i = 0; i < removed.size(); i++){
+            assertTrue(store.remove(removed.get(i)));
+            if (i % 100 == 0){
+                assertFound(store, photos.subList(i + 1, photos.size()));
+            }
+        }
+        for (Photo photo : removed){
+            assertNull(store.get(photo.getId()));
+        }
+        assertFound(store, kept);
+
+        // Slots freed by removing can be used again.
+        for (Photo photo : removed){
+            assertTrue(store.add(photo));
+        }
+        assertFound(store, photos);
+    }
+
+    /**
+     * Check that the store holds exactly the given photos.
+     * @param store Store to check.
+     * @param photos Photos it should hold.
+     */
+    private static void assertFound(PhotoStore store, List<Photo> photos){
+        assertEquals(photos.size(), store.size());
+        long[] ids = new long[photos.size()];
+        for (int i = 0; i < photos.size(); i++){
+            Photo photo = photos.get(i);
+            assertTrue(store.get(photo.getId()) == photo);
+            assertEquals(1, store.count(photo));
+            ids[i] = photo.getId();
+        }
+        Arrays.sort(ids);
+        assertTrue(Arrays.equals(ids, store.ids()));
+    }
+
+    /**
+     * Make a photo with the given ID.
+     * @param id ID of the photo.
+     * @return Photo.
+     */
+    private static Photo photo(long id){
+        Photo photo = new Photo("photo" + id + ".jpg", "", new GregorianCalendar(), new TagDictionary(),
+                Collections.<Tag>emptyList());
+        photo.setId(id);
+        return photo;
+    }
+}
@@ -0,0 +1,69 @@
+package Photos.Model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the IDs given to a user's tag names and values.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class TagDictionaryTest {
+
+    /**
+     * Equal tags get the same ID, and every name is only stored once.
+     */
+    @Test
+    public void equalTagsShareIds(){
+        TagDictionary dictionary = new TagDictionary();
+        int paris = dictionary.intern(new Tag("location", "paris"));
+        int rome = dictionary.intern(new Tag("location", "rome"));
+        int bob = dictionary.intern(new Tag("people", "bob"));
+
+        assertEquals(paris, dictionary.intern(new Tag("location", "paris")));
+        // Whether the tag can have multiples is not part of its ID.
+        assertEquals(bob, dictionary.intern(new Tag("people", "bob", true)));
+        assertNotEquals(paris, rome);
+        assertEquals(3, dictionary.size());
+
+        assertEquals(dictionary.nameOf(paris), dictionary.nameOf(rome));
+        assertNotEquals(dictionary.nameOf(paris), dictionary.nameOf(bob));
+        assertEquals("location", dictionary.name(rome));
+        assertEquals("rome", dictionary.value(rome));
+        assertEquals("people", dictionary.name(bob));
+        assertEquals("bob", dictionary.value(bob));
+    }
+
+    /**
+     * Looking a tag up does not give it an ID.
+     */
+    @Test
+    public void findDoesNotIntern(){
+        TagDictionary dictionary = new TagDictionary();
+        assertEquals(-1, dictionary.find(new Tag("mood", "happy")));
+        assertEquals(0, dictionary.size());
+        int happy = dictionary.intern(new Tag("mood", "happy"));
+        assertEquals(happy, dictionary.find(new Tag("mood", "happy")));
+        assertEquals(-1, dictionary.find(new Tag("mood", "sad")));
+    }
+
+    /**
+     * IDs never change as the dictionary grows, and later changes to a tag given to it
+     * do not change what is stored.
+     */
+    @Test
+    public void idsStayTheSame(){
+        TagDictionary dictionary = new TagDictionary();
+        Tag first = new Tag("caption", "0");
+        int firstId = dictionary.intern(first);
+        first.value = "changed";
+        for (int i = 1; i < 100; i++){
+            assertEquals(i, dictionary.intern(new Tag("caption", Integer.toString(i))));
+        }
+        assertEquals(firstId, dictionary.find(new Tag("caption", "0")));
+        assertEquals("0", dictionary.value(firstId));
+        assertEquals(-1, dictionary.find(new Tag("caption", "changed")));
+        assertEquals("caption", dictionary.name(99));
+    }
+}
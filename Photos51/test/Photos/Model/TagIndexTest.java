@@ -0,0 +1,102 @@
+package Photos.Model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the index of a user's photos by their tags.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class TagIndexTest {
+
+    private final TagDictionary dictionary = new TagDictionary();
+    private final TagIndex index = new TagIndex(dictionary);
+
+    /**
+     * Photos are found by each of their tags, in order of their IDs, whatever order
+     * they were added in.
+     */
+    @Test
+    public void findsPhotosByTag(){
+        Photo paris = photo(3, new Tag("location", "paris"), new Tag("people", "bob"));
+        Photo rome = photo(1, new Tag("location", "rome"), new Tag("people", "bob"));
+        Photo home = photo(2, new Tag("people", "bob"));
+        index.addPhoto(paris);
+        index.addPhoto(rome);
+        index.addPhoto(home);
+
+        assertEquals(3, index.size());
+        assertIds(index.get(new Tag("people", "bob")), 1, 2, 3);
+        assertIds(index.get(new Tag("location", "paris")), 3);
+        assertEquals(1, index.count(new Tag("location", "rome")));
+        // Same name, different value.
+        assertIds(index.get(new Tag("location", "tokyo")));
+        assertEquals(0, index.count(new Tag("weather", "sunny")));
+
+        index.removePhoto(rome);
+        assertEquals(2, index.size());
+        assertIds(index.get(new Tag("people", "bob")), 2, 3);
+        assertIds(index.get(new Tag("location", "rome")));
+    }
+
+    /**
+     * Tags added to and deleted from a photo in the index are kept up to date.
+     */
+    @Test
+    public void followsTagChanges(){
+        Photo photo = photo(5, new Tag("people", "bob", true));
+        index.addPhoto(photo);
+
+        Tag alice = new Tag("people", "alice", true);
+        assertTrue(photo.addTag(dictionary, alice));
+        index.addTag(photo, alice);
+        assertIds(index.get(new Tag("people", "alice")), 5);
+
+        assertTrue(photo.removeTag(new Tag("people", "bob")));
+        index.removeTag(photo, new Tag("people", "bob"));
+        assertIds(index.get(new Tag("people", "bob")));
+        assertIds(index.get(new Tag("people", "alice")), 5);
+
+        // A photo that still has the tag stays in its list.
+        index.removeTag(photo, alice);
+        assertIds(index.get(new Tag("people", "alice")), 5);
+    }
+
+    /**
+     * The array returned for a tag belongs to the caller, so changing it does not
+     * change the index.
+     */
+    @Test
+    public void returnsCopies(){
+        index.addPhoto(photo(7, new Tag("mood", "happy")));
+        long[] found = index.get(new Tag("mood", "happy"));
+        found[0] = 99;
+        assertIds(index.get(new Tag("mood", "happy")), 7);
+    }
+
+    /**
+     * Make a photo with the given ID and tags.
+     * @param id ID of the photo.
+     * @param tags Tags of the photo.
+     * @return Photo.
+     */
+    private Photo photo(long id, Tag... tags){
+        Photo photo = new Photo("photo" + id + ".jpg", "", new GregorianCalendar(), dictionary, Arrays.asList(tags));
+        photo.setId(id);
+        return photo;
+    }
+
+    /**
+     * Check the IDs found for a tag.
+     * @param found IDs found.
+     * @param ids IDs that should be found, in order.
+     */
+    private static void assertIds(long[] found, long... ids){
+        assertTrue(Arrays.toString(found), Arrays.equals(ids, found));
+    }
+}
@@ -0,0 +1,95 @@
+package Photos.Model;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests parsing and running searches over a user's tags.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class TagQueryTest {
+
+    private final TagDictionary dictionary = new TagDictionary();
+    private final TagIndex index = new TagIndex(dictionary);
+    private final long[] all = {1, 2, 3, 4};
+
+    /**
+     * Constructor, tagging four photos.
+     */
+    public TagQueryTest(){
+        photo(1, new Tag("location", "salt and pepper"), new Tag("mood", "happy"));
+        photo(2, new Tag("location", "salt"), new Tag("mood", "not  sad"));
+        photo(3, new Tag("location", "paris (france)"), new Tag("best friend", "bob"));
+        photo(4, new Tag("rock and roll", "yes"), new Tag("mood", "happy"));
+    }
+
+    /**
+     * Keywords in a value are part of it when no term follows them.
+     */
+    @Test
+    public void keywordsInValues() throws ParseException {
+        assertFound("location=salt and pepper", 1);
+        assertFound("location=salt and pepper and mood=happy", 1);
+        assertFound("location=salt or location=salt and pepper", 1, 2);
+        assertFound("rock and roll=yes", 4);
+        assertFound("mood=happy AND NOT location=salt and pepper", 4);
+        assertFound("location=salt and best friend=bob");
+        assertFound("(location=salt) or (best friend=bob)", 2, 3);
+    }
+
+    /**
+     * Anything in quotes is part of the tag or value, spaces included.
+     */
+    @Test
+    public void quotedValues() throws ParseException {
+        assertFound("location=\"salt and pepper\"", 1);
+        assertFound("location=\"paris (france)\"", 3);
+        assertFound("mood=\"not  sad\"", 2);
+        assertFound("mood=not  sad", 2);
+        assertFound("\"rock and roll\"=yes or location=\"salt\"", 2, 4);
+    }
+
+    /**
+     * Queries that cannot be read are still rejected.
+     */
+    @Test
+    public void invalidQueries(){
+        for (String query : new String[]{"location", "location=salt mood=happy", "location=\"salt",
+                "and location=salt", "location=salt or", "(location=salt", "not"}){
+            try {
+                TagQuery.parse(query);
+                fail("Parsed " + query);
+            } catch (ParseException e) {
+                // Expected.
+            }
+        }
+    }
+
+    /**
+     * Index a photo with the given tags.
+     * @param id ID of the photo.
+     * @param tags Tags of the photo.
+     */
+    private void photo(long id, Tag... tags){
+        Photo photo = new Photo("photo" + id + ".jpg", "", new GregorianCalendar(), dictionary, Arrays.asList(tags));
+        photo.setId(id);
+        index.addPhoto(photo);
+    }
+
+    /**
+     * Run a query and check the photos it finds.
+     * @param query Query to run.
+     * @param ids IDs of the photos it should find.
+     * @throws ParseException
+     */
+    private void assertFound(String query, long... ids) throws ParseException {
+        long[] found = TagQuery.parse(query).evaluate(index, all);
+        assertTrue(query + " found " + Arrays.toString(found), Arrays.equals(ids, found));
+    }
+}
@@ -0,0 +1,140 @@
+package Photos.Model;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests opening the file of stored thumbnails.
+ * @author Krysti Leong
+ * @author April Dizon
+ */
+public class ThumbnailStoreTest {
+
+    private static final byte[] header = {'P', 'H', 'T', 'B', 1};
+
+    /**
+     * A record that was only partly written when the app stopped is cut off, and the
+     * records before it are still read.
+     */
+    @Test
+    public void tornRecordIsCutOff() throws IOException {
+        File folder = Files.createTempDirectory("thumbnails").toFile();
+        File beach = photo(folder, "beach.jpg");
+        File hotel = photo(folder, "hotel.jpg");
+        byte[] whole = record(beach, fill(500, 1));
+        byte[] torn = Arrays.copyOf(record(hotel, fill(500, 2)), 300);
+        File file = write(folder, whole, torn);
+
+        ThumbnailStore store = new ThumbnailStore(file);
+        assertTrue(Arrays.equals(fill(500, 1), store.read(beach.getPath())));
+        assertNull(store.read(hotel.getPath()));
+        assertEquals(header.length + whole.length, file.length());
+        delete(folder);
+    }
+
+    /**
+     * A file that is mostly old thumbnails of photos that were stored again is rewritten
+     * with only the newest thumbnail of each photo.
+     */
+    @Test
+    public void oldThumbnailsAreCompacted() throws IOException {
+        File folder = Files.createTempDirectory("thumbnails").toFile();
+        File beach = photo(folder, "beach.jpg");
+        File hotel = photo(folder, "hotel.jpg");
+        byte[] newest = record(beach, fill(700000, 3));
+        byte[] other = record(hotel, fill(100, 4));
+        File file = write(folder, record(beach, fill(700000, 1)), other, record(beach, fill(700000, 2)), newest);
+
+        ThumbnailStore store = new ThumbnailStore(file);
+        assertEquals(header.length + other.length + newest.length, file.length());
+        assertTrue(Arrays.equals(fill(700000, 3), store.read(beach.getPath())));
+        assertTrue(Arrays.equals(fill(100, 4), store.read(hotel.getPath())));
+
+        // The compacted file reads back the same.
+        ThumbnailStore reopened = new ThumbnailStore(file);
+        assertTrue(Arrays.equals(fill(700000, 3), reopened.read(beach.getPath())));
+        assertTrue(Arrays.equals(fill(100, 4), reopened.read(hotel.getPath())));
+        delete(folder);
+    }
+
+    /**
+     * Make a photo file. Its contents do not matter, since the store only looks at its
+     * size and last modified time.
+     * @param folder Folder to make it in.
+     * @param name File name.
+     * @return Photo file.
+     * @throws IOException
+     */
+    private static File photo(File folder, String name) throws IOException {
+        File photo = new File(folder, name);
+        Files.write(photo.toPath(), fill(1000, 9));
+        return photo;
+    }
+
+    /**
+     * Encode the record of a thumbnail the way the store appends it.
+     * @param photo Photo the thumbnail is of.
+     * @param thumbnail Bytes of the thumbnail.
+     * @return Encoded record.
+     * @throws IOException
+     */
+    private static byte[] record(File photo, byte[] thumbnail) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(photo.getPath());
+        out.writeLong(photo.length());
+        out.writeLong(photo.lastModified());
+        out.writeInt(thumbnail.length);
+        out.write(thumbnail);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write a thumbnail file holding the given records.
+     * @param folder Folder to write it in.
+     * @param records Encoded records.
+     * @return Thumbnail file.
+     * @throws IOException
+     */
+    private static File write(File folder, byte[]... records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(header);
+        for (byte[] record : records){
+            bytes.write(record);
+        }
+        File file = new File(folder, "thumbnails.dat");
+        Files.write(file.toPath(), bytes.toByteArray());
+        return file;
+    }
+
+    /**
+     * Make an array filled with one byte value.
+     * @param length Length of the array.
+     * @param value Byte value.
+     * @return Filled array.
+     */
+    private static byte[] fill(int length, int value){
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    /**
+     * Delete a folder and the files in it.
+     * @param folder Folder to delete.
+     */
+    private static void delete(File folder){
+        for (File file : folder.listFiles()){
+            file.delete();
+        }
+        folder.delete();
+    }
+}